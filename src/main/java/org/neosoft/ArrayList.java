@@ -2,14 +2,22 @@ package org.neosoft;
 
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Comparator;
+import java.util.ConcurrentModificationException;
 import java.util.Iterator;
 import java.util.List;
 import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
 
 public abstract class ArrayList<E> implements List<E> {
     private static final int DEFAULT_CAPACITY = 10;
     private Object[] elements;
     private int size;
+    private int modCount; // Structural changes and sorts, checked by spliterators and forEach
 
     public ArrayList() {
         this.elements = new Object[DEFAULT_CAPACITY];
@@ -71,6 +79,7 @@ public abstract class ArrayList<E> implements List<E> {
 
     private class ArrayListIterator implements Iterator<E> {
         private int cursor;
+        private int expectedModCount = modCount;
 
         @Override
         public boolean hasNext() {
@@ -79,6 +88,8 @@ public abstract class ArrayList<E> implements List<E> {
 
         @Override
         public E next() {
+            if (modCount != expectedModCount)
+                throw new ConcurrentModificationException();
             if (cursor >= size)
                 throw new NoSuchElementException();
             return get(cursor++);
@@ -88,6 +99,7 @@ public abstract class ArrayList<E> implements List<E> {
 
     @Override
     public boolean add(E e) {
+        modCount++;
         ensureCapacity(size + 1);
         elements[size++] = e;
         return true;
@@ -97,6 +109,7 @@ public abstract class ArrayList<E> implements List<E> {
     public void add(int index, E element) {
         if (index < 0 || index > size)
             throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        modCount++;
         ensureCapacity(size + 1);
         System.arraycopy(elements, index, elements, index + 1, size - index);
         elements[index] = element;
@@ -107,6 +120,7 @@ public abstract class ArrayList<E> implements List<E> {
     public E remove(int index) {
         if (index < 0 || index >= size)
             throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        modCount++;
         E oldValue = elementData(index);
         int numMoved = size - index - 1;
         if (numMoved > 0)
@@ -133,13 +147,234 @@ public abstract class ArrayList<E> implements List<E> {
         return false;
     }
 
+    // Grows at most once and copies the whole collection in one arraycopy
+    @Override
+    public boolean addAll(Collection<? extends E> c) {
+        Object[] a = c.toArray();
+        int numNew = a.length;
+        if (numNew == 0)
+            return false;
+        modCount++;
+        ensureCapacity(size + numNew);
+        System.arraycopy(a, 0, elements, size, numNew);
+        size += numNew;
+        return true;
+    }
+
+    // Shifts the tail once to open the gap, however many elements are inserted
+    @Override
+    public boolean addAll(int index, Collection<? extends E> c) {
+        if (index < 0 || index > size)
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        Object[] a = c.toArray();
+        int numNew = a.length;
+        if (numNew == 0)
+            return false;
+        modCount++;
+        ensureCapacity(size + numNew);
+        int numMoved = size - index;
+        if (numMoved > 0)
+            System.arraycopy(elements, index, elements, index + numNew, numMoved);
+        System.arraycopy(a, 0, elements, index, numNew);
+        size += numNew;
+        return true;
+    }
+
+    // Removing one by one shifts the tail each time, O(n*k) for k removals. The bulk removals
+    // below instead compact the survivors towards the front in a single pass.
+    @Override
+    public boolean removeIf(Predicate<? super E> filter) {
+        Objects.requireNonNull(filter);
+        int r = 0, w = 0;
+        try {
+            for (; r < size; r++) {
+                E e = elementData(r);
+                if (!filter.test(e))
+                    elements[w++] = e;
+            }
+        } finally {
+            // If the filter throws, keep everything not yet looked at
+            finishCompaction(r, w);
+        }
+        return w != r;
+    }
+
+    @Override
+    public boolean removeAll(Collection<?> c) {
+        Objects.requireNonNull(c);
+        return batchRemove(c, false);
+    }
+
+    @Override
+    public boolean retainAll(Collection<?> c) {
+        Objects.requireNonNull(c);
+        return batchRemove(c, true);
+    }
+
+    private boolean batchRemove(Collection<?> c, boolean complement) {
+        int r = 0, w = 0;
+        try {
+            for (; r < size; r++)
+                if (c.contains(elements[r]) == complement)
+                    elements[w++] = elements[r];
+        } finally {
+            // If contains() throws, keep everything not yet looked at
+            finishCompaction(r, w);
+        }
+        return w != r;
+    }
+
+    // Moves the unvisited tail [r, size) down to w and clears the freed slots
+    private void finishCompaction(int r, int w) {
+        if (r != size) {
+            System.arraycopy(elements, r, elements, w, size - r);
+            w += size - r;
+        }
+        if (w != size) {
+            modCount++;
+            Arrays.fill(elements, w, size, null); // Let GC do its work
+            size = w;
+        }
+    }
+
+    // Removes [fromIndex, toIndex) with a single shift of the tail
+    public void removeRange(int fromIndex, int toIndex) {
+        if (fromIndex < 0 || toIndex > size || fromIndex > toIndex)
+            throw new IndexOutOfBoundsException("From Index: " + fromIndex + ", To Index: " + toIndex + ", Size: " + size);
+        modCount++;
+        System.arraycopy(elements, toIndex, elements, fromIndex, size - toIndex);
+        int newSize = size - (toIndex - fromIndex);
+        Arrays.fill(elements, newSize, size, null); // Let GC do its work
+        size = newSize;
+    }
+
     private void fastRemove(int index) {
+        modCount++;
         int numMoved = size - index - 1;
         if (numMoved > 0)
             System.arraycopy(elements, index + 1, elements, index, numMoved);
         elements[--size] = null; // Let GC do its work
     }
 
+    // Sorts the backing array in place instead of copying out and setting back element by element.
+    // A null comparator sorts by natural order.
+    @Override
+    @SuppressWarnings("unchecked")
+    public void sort(Comparator<? super E> c) {
+        int expectedModCount = modCount;
+        Arrays.sort((E[]) elements, 0, size, c);
+        if (modCount != expectedModCount)
+            throw new ConcurrentModificationException();
+        modCount++;
+    }
+
+    // Like sort, but splits the array across the common ForkJoinPool. Worth it for large lists.
+    @SuppressWarnings("unchecked")
+    public void parallelSort(Comparator<? super E> c) {
+        int expectedModCount = modCount;
+        Arrays.parallelSort((E[]) elements, 0, size, c);
+        if (modCount != expectedModCount)
+            throw new ConcurrentModificationException();
+        modCount++;
+    }
+
+    // Walks the backing array directly, without the range check get() does per element
+    @Override
+    public void forEach(Consumer<? super E> action) {
+        Objects.requireNonNull(action);
+        int expectedModCount = modCount;
+        Object[] es = elements;
+        int end = size;
+        for (int i = 0; modCount == expectedModCount && i < end; i++)
+            action.accept(elementAt(es, i));
+        if (modCount != expectedModCount)
+            throw new ConcurrentModificationException();
+    }
+
+    @Override
+    public void replaceAll(UnaryOperator<E> operator) {
+        Objects.requireNonNull(operator);
+        int expectedModCount = modCount;
+        Object[] es = elements;
+        int end = size;
+        for (int i = 0; modCount == expectedModCount && i < end; i++)
+            es[i] = operator.apply(elementAt(es, i));
+        if (modCount != expectedModCount)
+            throw new ConcurrentModificationException();
+    }
+
+    @Override
+    public Spliterator<E> spliterator() {
+        return new ArrayListSpliterator(0, -1, 0);
+    }
+
+    // Splits by index range over the backing array. Late-binding: the end of the range is read
+    // from size on first use rather than at creation, so elements added in between are seen.
+    private final class ArrayListSpliterator implements Spliterator<E> {
+        private int index;
+        private int fence; // -1 until first use, then one past the last index
+        private int expectedModCount;
+
+        ArrayListSpliterator(int origin, int fence, int expectedModCount) {
+            this.index = origin;
+            this.fence = fence;
+            this.expectedModCount = expectedModCount;
+        }
+
+        private int getFence() {
+            int hi = fence;
+            if (hi < 0) {
+                expectedModCount = modCount;
+                hi = fence = size;
+            }
+            return hi;
+        }
+
+        @Override
+        public Spliterator<E> trySplit() {
+            int hi = getFence(), lo = index, mid = (lo + hi) >>> 1;
+            if (lo >= mid)
+                return null;
+            index = mid;
+            return new ArrayListSpliterator(lo, mid, expectedModCount);
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super E> action) {
+            Objects.requireNonNull(action);
+            int hi = getFence(), i = index;
+            if (i >= hi)
+                return false;
+            index = i + 1;
+            action.accept(elementAt(elements, i));
+            if (modCount != expectedModCount)
+                throw new ConcurrentModificationException();
+            return true;
+        }
+
+        @Override
+        public void forEachRemaining(Consumer<? super E> action) {
+            Objects.requireNonNull(action);
+            int hi = getFence();
+            Object[] es = elements;
+            for (int i = index; i < hi; i++)
+                action.accept(elementAt(es, i));
+            index = hi;
+            if (modCount != expectedModCount)
+                throw new ConcurrentModificationException();
+        }
+
+        @Override
+        public long estimateSize() {
+            return getFence() - index;
+        }
+
+        @Override
+        public int characteristics() {
+            return Spliterator.ORDERED | Spliterator.SIZED | Spliterator.SUBSIZED;
+        }
+    }
+
     @Override
     public E get(int index) {
         if (index < 0 || index >= size)
@@ -160,6 +395,11 @@ public abstract class ArrayList<E> implements List<E> {
         return (E) elements[index];
     }
 
+    @SuppressWarnings("unchecked")
+    private static <E> E elementAt(Object[] es, int index) {
+        return (E) es[index];
+    }
+
 
 }
 
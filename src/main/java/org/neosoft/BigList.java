@@ -0,0 +1,414 @@
+package org.neosoft;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+// List with long indices whose elements are stored in fixed-size chunks of 2^16 references.
+//
+// Growing allocates one more chunk and never copies the elements already stored, so there is
+// no multi-GB transient array and no Integer.MAX_VALUE cap. Only the chunk directory, one
+// reference per chunk, is copied when it fills up. Chunks stay allocated after removals, like
+// the spare capacity of an ArrayList, until clear() or trimToSize().
+//
+// Inserting or removing in the middle shifts the tail across chunks, O(n) like ArrayList.
+// See BigLongList for primitive longs, optionally stored off-heap.
+public class BigList<E> implements Iterable<E> {
+    static final int CHUNK_SHIFT = 16;
+    static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+    static final int CHUNK_MASK = CHUNK_SIZE - 1;
+    private static final int DEFAULT_DIRECTORY_SIZE = 16;
+
+    private Object[][] chunks;
+    private int chunkCount; // Chunks allocated, the rest of the directory is null
+    private long size;
+    private int modCount;
+
+    public BigList() {
+        this.chunks = new Object[DEFAULT_DIRECTORY_SIZE][];
+    }
+
+    // Allocates the chunks for initialCapacity elements up front
+    public BigList(long initialCapacity) {
+        if (initialCapacity < 0) {
+            throw new IllegalArgumentException("Invalid initial capacity: " + initialCapacity);
+        }
+        this.chunks = new Object[Math.max(DEFAULT_DIRECTORY_SIZE, chunksFor(initialCapacity))][];
+        ensureCapacity(initialCapacity);
+    }
+
+    private static int chunksFor(long capacity) {
+        long count = (capacity + CHUNK_MASK) >>> CHUNK_SHIFT;
+        if (count > Integer.MAX_VALUE) {
+            throw new OutOfMemoryError("Capacity too large: " + capacity);
+        }
+        return (int) count;
+    }
+
+    public void ensureCapacity(long minCapacity) {
+        int needed = chunksFor(minCapacity);
+        if (needed <= chunkCount) {
+            return;
+        }
+        if (needed > chunks.length) {
+            // Only the directory is copied, existing chunks stay where they are
+            long newLength = Math.max(needed, (long) chunks.length << 1);
+            chunks = Arrays.copyOf(chunks, (int) Math.min(newLength, Integer.MAX_VALUE - 8));
+        }
+        while (chunkCount < needed) {
+            chunks[chunkCount++] = new Object[CHUNK_SIZE];
+        }
+    }
+
+    // Frees the chunks past the last element
+    public void trimToSize() {
+        int needed = chunksFor(size);
+        while (chunkCount > needed) {
+            chunks[--chunkCount] = null;
+        }
+    }
+
+    public long size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public boolean contains(Object o) {
+        return indexOf(o) >= 0;
+    }
+
+    public boolean add(E e) {
+        modCount++;
+        ensureCapacity(size + 1);
+        chunks[(int) (size >>> CHUNK_SHIFT)][(int) size & CHUNK_MASK] = e;
+        size++;
+        return true;
+    }
+
+    public void add(long index, E element) {
+        if (index < 0 || index > size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+        modCount++;
+        ensureCapacity(size + 1);
+        shiftRight(index);
+        chunks[(int) (index >>> CHUNK_SHIFT)][(int) index & CHUNK_MASK] = element;
+        size++;
+    }
+
+    // Moves [index, size) up by one, one arraycopy per chunk plus the element crossing into the next
+    private void shiftRight(long index) {
+        long pos = size; // Slot being filled
+        while (pos > index) {
+            Object[] chunk = chunks[(int) (pos >>> CHUNK_SHIFT)];
+            int offset = (int) pos & CHUNK_MASK;
+            long chunkStart = pos - offset;
+            int lo = (int) (Math.max(index, chunkStart) - chunkStart);
+            System.arraycopy(chunk, lo, chunk, lo + 1, offset - lo);
+            if (chunkStart > index) {
+                chunk[0] = chunks[(int) (chunkStart >>> CHUNK_SHIFT) - 1][CHUNK_MASK];
+            }
+            pos = chunkStart - 1;
+        }
+    }
+
+    // Appends the collection chunk by chunk, with one arraycopy per chunk it spans
+    public boolean appendAll(Collection<? extends E> c) {
+        Object[] a = c.toArray();
+        if (a.length == 0) {
+            return false;
+        }
+        modCount++;
+        ensureCapacity(size + a.length);
+        int copied = 0;
+        while (copied < a.length) {
+            int offset = (int) size & CHUNK_MASK;
+            int n = Math.min(CHUNK_SIZE - offset, a.length - copied);
+            System.arraycopy(a, copied, chunks[(int) (size >>> CHUNK_SHIFT)], offset, n);
+            copied += n;
+            size += n;
+        }
+        return true;
+    }
+
+    // Appends another big list without going through an intermediate array
+    public boolean appendAll(BigList<? extends E> other) {
+        long count = other.size;
+        if (count == 0) {
+            return false;
+        }
+        modCount++;
+        ensureCapacity(size + count);
+        long from = 0;
+        while (from < count) {
+            Object[] src = other.chunks[(int) (from >>> CHUNK_SHIFT)];
+            int srcOffset = (int) from & CHUNK_MASK;
+            int dstOffset = (int) size & CHUNK_MASK;
+            int n = (int) Math.min(Math.min(CHUNK_SIZE - srcOffset, CHUNK_SIZE - dstOffset), count - from);
+            System.arraycopy(src, srcOffset, chunks[(int) (size >>> CHUNK_SHIFT)], dstOffset, n);
+            from += n;
+            size += n;
+        }
+        return true;
+    }
+
+    public E get(long index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+        return elementAt(chunks[(int) (index >>> CHUNK_SHIFT)], (int) index & CHUNK_MASK);
+    }
+
+    public E set(long index, E element) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+        Object[] chunk = chunks[(int) (index >>> CHUNK_SHIFT)];
+        int offset = (int) index & CHUNK_MASK;
+        E oldValue = elementAt(chunk, offset);
+        chunk[offset] = element;
+        return oldValue;
+    }
+
+    public E remove(long index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+        modCount++;
+        E oldValue = get(index);
+        shiftLeft(index);
+        size--;
+        chunks[(int) (size >>> CHUNK_SHIFT)][(int) size & CHUNK_MASK] = null; // Let GC do its work
+        return oldValue;
+    }
+
+    public boolean remove(Object o) {
+        long index = indexOf(o);
+        if (index < 0) {
+            return false;
+        }
+        remove(index);
+        return true;
+    }
+
+    // Moves (index, size) down by one, one arraycopy per chunk plus the element crossing into the previous
+    private void shiftLeft(long index) {
+        long last = size - 1;
+        long pos = index; // Slot being filled
+        while (pos < last) {
+            Object[] chunk = chunks[(int) (pos >>> CHUNK_SHIFT)];
+            int offset = (int) pos & CHUNK_MASK;
+            long chunkStart = pos - offset;
+            int hi = (int) (Math.min(last, chunkStart + CHUNK_MASK) - chunkStart);
+            System.arraycopy(chunk, offset + 1, chunk, offset, hi - offset);
+            if (chunkStart + CHUNK_MASK < last) {
+                chunk[CHUNK_MASK] = chunks[(int) (chunkStart >>> CHUNK_SHIFT) + 1][0];
+            }
+            pos = chunkStart + CHUNK_SIZE;
+        }
+    }
+
+    public long indexOf(Object o) {
+        for (int c = 0; c < chunkCount; c++) {
+            Object[] chunk = chunks[c];
+            long chunkStart = (long) c << CHUNK_SHIFT;
+            int end = (int) Math.min(CHUNK_SIZE, size - chunkStart);
+            for (int i = 0; i < end; i++) {
+                if (Objects.equals(o, chunk[i])) {
+                    return chunkStart + i;
+                }
+            }
+        }
+        return -1;
+    }
+
+    public long lastIndexOf(Object o) {
+        for (long i = size - 1; i >= 0; i--) {
+            if (Objects.equals(o, chunks[(int) (i >>> CHUNK_SHIFT)][(int) i & CHUNK_MASK])) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    // Drops every chunk but the first
+    public void clear() {
+        modCount++;
+        if (chunkCount > 0) {
+            Arrays.fill(chunks[0], null);
+        }
+        for (int c = 1; c < chunkCount; c++) {
+            chunks[c] = null;
+        }
+        chunkCount = Math.min(chunkCount, 1);
+        size = 0;
+    }
+
+    @Override
+    public Iterator<E> iterator() {
+        return new BigListIterator();
+    }
+
+    private class BigListIterator implements Iterator<E> {
+        private long cursor;
+        private long lastReturned = -1;
+        private int expectedModCount = modCount;
+
+        @Override
+        public boolean hasNext() {
+            return cursor < size;
+        }
+
+        @Override
+        public E next() {
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            if (cursor >= size) {
+                throw new NoSuchElementException();
+            }
+            lastReturned = cursor++;
+            return elementAt(chunks[(int) (lastReturned >>> CHUNK_SHIFT)], (int) lastReturned & CHUNK_MASK);
+        }
+
+        @Override
+        public void remove() {
+            if (lastReturned < 0) {
+                throw new IllegalStateException();
+            }
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            BigList.this.remove(lastReturned);
+            cursor = lastReturned;
+            lastReturned = -1;
+            expectedModCount = modCount;
+        }
+    }
+
+    // Walks the chunks directly, without per-element index arithmetic and range checks
+    @Override
+    public void forEach(Consumer<? super E> action) {
+        Objects.requireNonNull(action);
+        int expectedModCount = modCount;
+        long end = size;
+        for (int c = 0; c < chunkCount && ((long) c << CHUNK_SHIFT) < end; c++) {
+            Object[] chunk = chunks[c];
+            int n = (int) Math.min(CHUNK_SIZE, end - ((long) c << CHUNK_SHIFT));
+            for (int i = 0; i < n; i++) {
+                action.accept(elementAt(chunk, i));
+            }
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+        }
+    }
+
+    @Override
+    public Spliterator<E> spliterator() {
+        return new BigListSpliterator(0, -1, 0);
+    }
+
+    public Stream<E> stream() {
+        return StreamSupport.stream(spliterator(), false);
+    }
+
+    public Stream<E> parallelStream() {
+        return StreamSupport.stream(spliterator(), true);
+    }
+
+    // Splits by index range, on chunk boundaries when the range spans several chunks.
+    // Late-binding: the end is read from size on first use.
+    private final class BigListSpliterator implements Spliterator<E> {
+        private long index;
+        private long fence; // -1 until first use, then one past the last index
+        private int expectedModCount;
+
+        BigListSpliterator(long origin, long fence, int expectedModCount) {
+            this.index = origin;
+            this.fence = fence;
+            this.expectedModCount = expectedModCount;
+        }
+
+        private long getFence() {
+            long hi = fence;
+            if (hi < 0) {
+                expectedModCount = modCount;
+                hi = fence = size;
+            }
+            return hi;
+        }
+
+        @Override
+        public Spliterator<E> trySplit() {
+            long hi = getFence(), lo = index, mid = (lo + hi) >>> 1;
+            if (hi - lo > CHUNK_SIZE) {
+                mid &= ~(long) CHUNK_MASK; // Keep each half's chunks to itself
+            }
+            if (lo >= mid) {
+                return null;
+            }
+            index = mid;
+            return new BigListSpliterator(lo, mid, expectedModCount);
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super E> action) {
+            Objects.requireNonNull(action);
+            long hi = getFence(), i = index;
+            if (i >= hi) {
+                return false;
+            }
+            index = i + 1;
+            action.accept(elementAt(chunks[(int) (i >>> CHUNK_SHIFT)], (int) i & CHUNK_MASK));
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            return true;
+        }
+
+        @Override
+        public void forEachRemaining(Consumer<? super E> action) {
+            Objects.requireNonNull(action);
+            long hi = getFence(), i = index;
+            while (i < hi) {
+                Object[] chunk = chunks[(int) (i >>> CHUNK_SHIFT)];
+                int offset = (int) i & CHUNK_MASK;
+                int end = (int) Math.min(CHUNK_SIZE, offset + (hi - i));
+                for (int j = offset; j < end; j++) {
+                    action.accept(elementAt(chunk, j));
+                }
+                i += end - offset;
+            }
+            index = hi;
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+        }
+
+        @Override
+        public long estimateSize() {
+            return getFence() - index;
+        }
+
+        @Override
+        public int characteristics() {
+            return Spliterator.ORDERED | Spliterator.SIZED | Spliterator.SUBSIZED;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <E> E elementAt(Object[] chunk, int offset) {
+        return (E) chunk[offset];
+    }
+}
@@ -0,0 +1,236 @@
+package org.neosoft;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.Objects;
+import java.util.Spliterator;
+import java.util.function.LongConsumer;
+import java.util.stream.LongStream;
+import java.util.stream.StreamSupport;
+
+// Append-mostly list of unboxed longs with long indices, stored in fixed-size chunks like
+// BigList, so growing never copies the values already stored.
+//
+// Chunks are LongBuffers: heap buffers over a long[], or with offHeap direct buffers outside
+// the Java heap, which the garbage collector neither scans nor moves. Direct chunks are freed
+// when the list becomes unreachable, not by clear().
+public class BigLongList {
+    private static final int CHUNK_SHIFT = BigList.CHUNK_SHIFT;
+    private static final int CHUNK_SIZE = BigList.CHUNK_SIZE;
+    private static final int CHUNK_MASK = BigList.CHUNK_MASK;
+    private static final int DEFAULT_DIRECTORY_SIZE = 16;
+
+    private final boolean offHeap;
+    private LongBuffer[] chunks;
+    private int chunkCount;
+    private long size;
+    private int modCount;
+
+    public BigLongList() {
+        this(false);
+    }
+
+    public BigLongList(boolean offHeap) {
+        this.offHeap = offHeap;
+        this.chunks = new LongBuffer[DEFAULT_DIRECTORY_SIZE];
+    }
+
+    public boolean isOffHeap() {
+        return offHeap;
+    }
+
+    public void ensureCapacity(long minCapacity) {
+        long count = (minCapacity + CHUNK_MASK) >>> CHUNK_SHIFT;
+        if (count > Integer.MAX_VALUE) {
+            throw new OutOfMemoryError("Capacity too large: " + minCapacity);
+        }
+        int needed = (int) count;
+        if (needed <= chunkCount) {
+            return;
+        }
+        if (needed > chunks.length) {
+            long newLength = Math.max(needed, (long) chunks.length << 1);
+            chunks = Arrays.copyOf(chunks, (int) Math.min(newLength, Integer.MAX_VALUE - 8));
+        }
+        while (chunkCount < needed) {
+            chunks[chunkCount++] = newChunk();
+        }
+    }
+
+    private LongBuffer newChunk() {
+        if (offHeap) {
+            return ByteBuffer.allocateDirect(CHUNK_SIZE * Long.BYTES).order(ByteOrder.nativeOrder()).asLongBuffer();
+        }
+        return LongBuffer.wrap(new long[CHUNK_SIZE]);
+    }
+
+    public long size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void add(long value) {
+        modCount++;
+        ensureCapacity(size + 1);
+        chunks[(int) (size >>> CHUNK_SHIFT)].put((int) size & CHUNK_MASK, value);
+        size++;
+    }
+
+    // Appends values[offset, offset + length) with one bulk copy per chunk it spans
+    public void appendAll(long[] values, int offset, int length) {
+        if (offset < 0 || length < 0 || offset > values.length - length) {
+            throw new IndexOutOfBoundsException("Offset: " + offset + ", Length: " + length + ", Array: " + values.length);
+        }
+        modCount++;
+        ensureCapacity(size + length);
+        int copied = 0;
+        while (copied < length) {
+            int chunkOffset = (int) size & CHUNK_MASK;
+            int n = Math.min(CHUNK_SIZE - chunkOffset, length - copied);
+            LongBuffer chunk = chunks[(int) (size >>> CHUNK_SHIFT)].duplicate();
+            chunk.position(chunkOffset);
+            chunk.put(values, offset + copied, n);
+            copied += n;
+            size += n;
+        }
+    }
+
+    public void appendAll(long[] values) {
+        appendAll(values, 0, values.length);
+    }
+
+    public long get(long index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+        return chunks[(int) (index >>> CHUNK_SHIFT)].get((int) index & CHUNK_MASK);
+    }
+
+    public long set(long index, long value) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+        LongBuffer chunk = chunks[(int) (index >>> CHUNK_SHIFT)];
+        int offset = (int) index & CHUNK_MASK;
+        long oldValue = chunk.get(offset);
+        chunk.put(offset, value);
+        return oldValue;
+    }
+
+    public long removeLast() {
+        if (size == 0) {
+            throw new IndexOutOfBoundsException("Index: -1, Size: 0");
+        }
+        modCount++;
+        size--;
+        return chunks[(int) (size >>> CHUNK_SHIFT)].get((int) size & CHUNK_MASK);
+    }
+
+    // Keeps the chunks for reuse
+    public void clear() {
+        modCount++;
+        size = 0;
+    }
+
+    public void forEach(LongConsumer action) {
+        Objects.requireNonNull(action);
+        spliterator().forEachRemaining(action);
+    }
+
+    public Spliterator.OfLong spliterator() {
+        return new BigLongListSpliterator(0, -1, 0);
+    }
+
+    public LongStream stream() {
+        return StreamSupport.longStream(spliterator(), false);
+    }
+
+    public LongStream parallelStream() {
+        return StreamSupport.longStream(spliterator(), true);
+    }
+
+    // Same index-range, late-binding split as BigList's, over the long chunks
+    private final class BigLongListSpliterator implements Spliterator.OfLong {
+        private long index;
+        private long fence; // -1 until first use, then one past the last index
+        private int expectedModCount;
+
+        BigLongListSpliterator(long origin, long fence, int expectedModCount) {
+            this.index = origin;
+            this.fence = fence;
+            this.expectedModCount = expectedModCount;
+        }
+
+        private long getFence() {
+            long hi = fence;
+            if (hi < 0) {
+                expectedModCount = modCount;
+                hi = fence = size;
+            }
+            return hi;
+        }
+
+        @Override
+        public Spliterator.OfLong trySplit() {
+            long hi = getFence(), lo = index, mid = (lo + hi) >>> 1;
+            if (hi - lo > CHUNK_SIZE) {
+                mid &= ~(long) CHUNK_MASK;
+            }
+            if (lo >= mid) {
+                return null;
+            }
+            index = mid;
+            return new BigLongListSpliterator(lo, mid, expectedModCount);
+        }
+
+        @Override
+        public boolean tryAdvance(LongConsumer action) {
+            Objects.requireNonNull(action);
+            long hi = getFence(), i = index;
+            if (i >= hi) {
+                return false;
+            }
+            index = i + 1;
+            action.accept(chunks[(int) (i >>> CHUNK_SHIFT)].get((int) i & CHUNK_MASK));
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            return true;
+        }
+
+        @Override
+        public void forEachRemaining(LongConsumer action) {
+            Objects.requireNonNull(action);
+            long hi = getFence(), i = index;
+            while (i < hi) {
+                LongBuffer chunk = chunks[(int) (i >>> CHUNK_SHIFT)];
+                int offset = (int) i & CHUNK_MASK;
+                int end = (int) Math.min(CHUNK_SIZE, offset + (hi - i));
+                for (int j = offset; j < end; j++) {
+                    action.accept(chunk.get(j));
+                }
+                i += end - offset;
+            }
+            index = hi;
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+        }
+
+        @Override
+        public long estimateSize() {
+            return getFence() - index;
+        }
+
+        @Override
+        public int characteristics() {
+            return Spliterator.ORDERED | Spliterator.SIZED | Spliterator.SUBSIZED;
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package org.neosoft;
+
+// A bounded key-value cache. Unlike a Map, a cache may drop any entry at any time,
+// so a put is never a guarantee that a later getIfPresent finds the value.
+// Null keys and values are not supported.
+public interface Cache<K, V> {
+    // Returns the cached value, or null on a miss
+    V getIfPresent(K key);
+
+    void put(K key, V value);
+
+    void invalidate(K key);
+
+    int size();
+}
@@ -0,0 +1,22 @@
+package org.neosoft;
+
+import java.util.Set;
+
+// Computes the values of a LoadingCache. A null result means the key has no value;
+// nothing is cached for it then.
+public interface CacheLoader<K, V> {
+    V load(K key) throws Exception;
+
+    // Loads several keys at once. Override it when the backend has a bulk call; by default
+    // the keys are loaded one by one. Keys missing from the result have no value.
+    default Map<K, V> loadAll(Set<? extends K> keys) throws Exception {
+        Map<K, V> result = new HashMap<>();
+        for (K key : keys) {
+            V value = load(key);
+            if (value != null) {
+                result.put(key, value);
+            }
+        }
+        return result;
+    }
+}
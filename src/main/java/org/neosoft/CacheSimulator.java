@@ -0,0 +1,131 @@
+package org.neosoft;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Random;
+
+// Replays key traces against TinyLfuCache and a plain LRU LinkedHashMap of the same size
+// and reports their hit rates. Without arguments it generates two synthetic traces: a Zipf
+// distribution, and the same distribution interleaved with long scans of one-off keys.
+// Run with: java org.neosoft.CacheSimulator [traceFile [cacheSize...]]
+// where the trace file holds one key per line.
+public class CacheSimulator {
+    public static void main(String[] args) throws IOException {
+        if (args.length > 0) {
+            List<String> lines = Files.readAllLines(Paths.get(args[0]));
+            // Each distinct key gets its own id; hashing would make colliding keys count as hits
+            HashMap<String, Long> ids = new HashMap<>();
+            long[] trace = new long[lines.size()];
+            for (int i = 0; i < trace.length; i++) {
+                String key = lines.get(i).trim();
+                Long id = ids.get(key);
+                if (id == null) {
+                    id = (long) ids.size();
+                    ids.put(key, id);
+                }
+                trace[i] = id;
+            }
+            int[] sizes = new int[Math.max(1, args.length - 1)];
+            sizes[0] = 1000;
+            for (int i = 1; i < args.length; i++) {
+                sizes[i - 1] = Integer.parseInt(args[i]);
+            }
+            report(args[0], trace, sizes);
+            return;
+        }
+
+        int[] sizes = {100, 1000, 10_000};
+        report("zipf(0.9)", zipfTrace(2_000_000, 100_000, 0.9, 0, 0), sizes);
+        report("zipf(0.9) + scans", zipfTrace(2_000_000, 100_000, 0.9, 50_000, 20_000), sizes);
+    }
+
+    private static void report(String name, long[] trace, int[] sizes) {
+        System.out.println(name + ", " + trace.length + " requests");
+        for (int size : sizes) {
+            double lru = hitRate(new LruCache<>(size), trace);
+            double tinyLfu = hitRate(new TinyLfuCache<>(size), trace);
+            System.out.printf("  size %6d  LRU %6.2f%%  W-TinyLFU %6.2f%%%n", size, lru * 100, tinyLfu * 100);
+        }
+    }
+
+    private static double hitRate(Cache<Long, Boolean> cache, long[] trace) {
+        long hits = 0;
+        for (long key : trace) {
+            if (cache.getIfPresent(key) != null) {
+                hits++;
+            } else {
+                cache.put(key, Boolean.TRUE);
+            }
+        }
+        return (double) hits / trace.length;
+    }
+
+    // Keys drawn from a Zipf distribution. Every scanEvery requests, a scan of scanLength
+    // never-repeated keys is inserted.
+    private static long[] zipfTrace(int length, int keys, double skew, int scanEvery, int scanLength) {
+        double[] cdf = new double[keys];
+        double sum = 0;
+        for (int i = 0; i < keys; i++) {
+            sum += 1 / Math.pow(i + 1, skew);
+            cdf[i] = sum;
+        }
+
+        Random random = new Random(42);
+        long[] trace = new long[length];
+        long nextScanKey = keys;
+        for (int i = 0; i < length; ) {
+            if (scanEvery > 0 && i > 0 && i % scanEvery == 0) {
+                for (int j = 0; j < scanLength && i < length; j++) {
+                    trace[i++] = nextScanKey++;
+                }
+                if (i >= length) {
+                    break;
+                }
+            }
+            double u = random.nextDouble() * sum;
+            int lo = 0;
+            int hi = keys - 1;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (cdf[mid] < u) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid;
+                }
+            }
+            trace[i++] = lo;
+        }
+        return trace;
+    }
+
+    // The baseline: a bounded access-ordered LinkedHashMap
+    private static final class LruCache<K, V> implements Cache<K, V> {
+        private final LinkedHashMap<K, V> map;
+
+        LruCache(int maximumSize) {
+            map = new LinkedHashMap<>(16, 0.75f, true, maximumSize);
+        }
+
+        @Override
+        public V getIfPresent(K key) {
+            return map.get(key);
+        }
+
+        @Override
+        public void put(K key, V value) {
+            map.put(key, value);
+        }
+
+        @Override
+        public void invalidate(K key) {
+            map.remove(key);
+        }
+
+        @Override
+        public int size() {
+            return map.size();
+        }
+    }
+}
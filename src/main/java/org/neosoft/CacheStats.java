@@ -0,0 +1,85 @@
+package org.neosoft;
+
+// Immutable snapshot of a cache's counters, returned by stats() once enableStats() is on.
+// Counts are cumulative; subtract two snapshots with minus() for the rates of an interval.
+public final class CacheStats {
+    private final long hitCount;
+    private final long missCount;
+    private final long loadSuccessCount;
+    private final long loadFailureCount;
+    private final long totalLoadTime;
+    private final long evictionCount;
+
+    public CacheStats(long hitCount, long missCount, long loadSuccessCount, long loadFailureCount,
+                      long totalLoadTime, long evictionCount) {
+        this.hitCount = hitCount;
+        this.missCount = missCount;
+        this.loadSuccessCount = loadSuccessCount;
+        this.loadFailureCount = loadFailureCount;
+        this.totalLoadTime = totalLoadTime;
+        this.evictionCount = evictionCount;
+    }
+
+    public long hitCount() {
+        return hitCount;
+    }
+
+    public long missCount() {
+        return missCount;
+    }
+
+    public long requestCount() {
+        return hitCount + missCount;
+    }
+
+    // 1.0 when there were no requests
+    public double hitRate() {
+        long requests = requestCount();
+        return (requests == 0) ? 1.0 : (double) hitCount / requests;
+    }
+
+    public double missRate() {
+        long requests = requestCount();
+        return (requests == 0) ? 0.0 : (double) missCount / requests;
+    }
+
+    public long loadSuccessCount() {
+        return loadSuccessCount;
+    }
+
+    public long loadFailureCount() {
+        return loadFailureCount;
+    }
+
+    // Nanoseconds spent in the loader, failed loads included
+    public long totalLoadTime() {
+        return totalLoadTime;
+    }
+
+    public double averageLoadPenalty() {
+        long loads = loadSuccessCount + loadFailureCount;
+        return (loads == 0) ? 0.0 : (double) totalLoadTime / loads;
+    }
+
+    // Entries removed for size or expiration
+    public long evictionCount() {
+        return evictionCount;
+    }
+
+    public CacheStats minus(CacheStats other) {
+        return new CacheStats(
+                Math.max(0, hitCount - other.hitCount),
+                Math.max(0, missCount - other.missCount),
+                Math.max(0, loadSuccessCount - other.loadSuccessCount),
+                Math.max(0, loadFailureCount - other.loadFailureCount),
+                Math.max(0, totalLoadTime - other.totalLoadTime),
+                Math.max(0, evictionCount - other.evictionCount));
+    }
+
+    @Override
+    public String toString() {
+        return String.format("hits=%d misses=%d hitRate=%.4f loads=%d loadFailures=%d avgLoadMs=%.3f evictions=%d",
+                hitCount, missCount, hitRate(), loadSuccessCount, loadFailureCount,
+                averageLoadPenalty() / 1e6, evictionCount);
+    }
+}
@@ -0,0 +1,418 @@
+package org.neosoft;
+
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+
+// Thread-safe bounded LRU cache. The entries live in a ConcurrentHashMap, so lookups never
+// block. The eviction order is kept in an access-ordered LinkedHashMap, which is only
+// touched while holding evictionLock, and never on the caller's critical path:
+//
+//  - a read records its node in one of several striped ring buffers, with a single CAS.
+//    When a buffer fills up, whichever reader gets the lock with tryLock replays every
+//    buffer into the LinkedHashMap in a batch. Reads that find their buffer full while
+//    another thread is draining are dropped, which only makes the LRU order approximate.
+//  - a write queues its policy update in a bounded write buffer and drains it right away
+//    if the lock is free. Writes are never dropped: when the buffer is full the writer
+//    waits for the lock and drains it itself, which is what keeps the cache bounded.
+//
+// With an Expiry, every entry also gets a deadline. Reads treat an entry past its deadline
+// as a miss straight away, and the maintenance runs above advance a TimerWheel that
+// removes expired entries in batches, so there is no cleanup thread and no O(log n)
+// priority queue. size() may still count expired entries that have not been removed yet.
+//
+// Statistics and removal notifications are opt-in: until enableStats() or
+// setRemovalListener() is called, both cost a null check.
+//
+// Null keys and values are not supported.
+public class ConcurrentCache<K, V> implements Cache<K, V> {
+    private static final int READ_BUFFER_SIZE = 16;
+    private static final int READ_BUFFER_MASK = READ_BUFFER_SIZE - 1;
+    private static final int WRITE_BUFFER_SIZE = 128;
+    // Longest lifetime an entry can get; far enough to never expire, short enough not to overflow
+    private static final long MAXIMUM_EXPIRY = Long.MAX_VALUE >> 1;
+
+    private final int maximumSize;
+    private final ConcurrentHashMap<K, Node<K, V>> data;
+    private final LinkedHashMap<K, Node<K, V>> policy; // Guarded by evictionLock
+    private final ReentrantLock evictionLock = new ReentrantLock();
+    private final ReadBuffer<K, V>[] readBuffers;
+    private final int readBufferMask;
+    private final ArrayBlockingQueue<Runnable> writeBuffer = new ArrayBlockingQueue<>(WRITE_BUFFER_SIZE);
+
+    // Expiration, all null when entries never expire
+    private final Expiry<K, V> expiry;
+    private final LongSupplier ticker;
+    private final long origin; // Ticker reading that counts as time zero
+    private final TimerWheel<K, V> timerWheel; // Guarded by evictionLock
+
+    private volatile StatsCounter statsCounter; // null unless enableStats() was called
+    private volatile RemovalListener<K, V> removalListener;
+    private volatile Executor removalExecutor; // null to notify on the removing thread
+
+    static final class Node<K, V> {
+        final K key;
+        volatile V value;
+        // Set once the node has left the data map; a queued add for it is then ignored
+        volatile boolean retired;
+        // Deadline in nanoseconds since the cache's origin, when the cache has an Expiry
+        volatile long expiresAt;
+        // Timer wheel bucket links, null while unscheduled; guarded by evictionLock
+        Node<K, V> prevInWheel;
+        Node<K, V> nextInWheel;
+
+        Node(K key, V value) {
+            this.key = key;
+            this.value = value;
+        }
+    }
+
+    // Ring buffer written by any number of readers with a CAS on writeCounter, and drained
+    // by the thread holding evictionLock. A slot is null until its reader has published it.
+    static final class ReadBuffer<K, V> {
+        final AtomicReferenceArray<Node<K, V>> buffer = new AtomicReferenceArray<>(READ_BUFFER_SIZE);
+        final AtomicLong writeCounter = new AtomicLong();
+        volatile long readCounter;
+
+        // Returns false if the buffer is full
+        boolean offer(Node<K, V> node) {
+            long head = readCounter;
+            long tail = writeCounter.get();
+            if (tail - head >= READ_BUFFER_SIZE) {
+                return false;
+            }
+            if (writeCounter.compareAndSet(tail, tail + 1)) {
+                buffer.lazySet((int) (tail & READ_BUFFER_MASK), node);
+            }
+            return true; // Losing the CAS drops the read rather than spinning
+        }
+    }
+
+    public ConcurrentCache(int maximumSize) {
+        this(maximumSize, null, System::nanoTime);
+    }
+
+    public ConcurrentCache(int maximumSize, Expiry<K, V> expiry) {
+        this(maximumSize, expiry, System::nanoTime);
+    }
+
+    // The ticker supplies the current time in nanoseconds, it can be replaced to test expiration
+    public ConcurrentCache(int maximumSize, Expiry<K, V> expiry, LongSupplier ticker) {
+        if (maximumSize <= 0) {
+            throw new IllegalArgumentException("Invalid maximum size: " + maximumSize);
+        }
+        this.maximumSize = maximumSize;
+        this.data = new ConcurrentHashMap<>(Math.min(maximumSize, 1 << 16));
+        this.policy = new LinkedHashMap<>(16, 0.75f, true);
+
+        int stripes = OpenHashMap.tableSizeFor(4 * Runtime.getRuntime().availableProcessors());
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        ReadBuffer<K, V>[] buffers = new ReadBuffer[stripes];
+        this.readBuffers = buffers;
+        for (int i = 0; i < stripes; i++) {
+            readBuffers[i] = new ReadBuffer<>();
+        }
+        this.readBufferMask = stripes - 1;
+
+        this.expiry = expiry;
+        this.ticker = Objects.requireNonNull(ticker);
+        this.origin = ticker.getAsLong();
+        this.timerWheel = (expiry != null) ? new TimerWheel<>(0) : null;
+    }
+
+    @Override
+    public V getIfPresent(K key) {
+        StatsCounter counter = statsCounter;
+        Node<K, V> node = data.get(key);
+        if (node == null) {
+            if (counter != null) {
+                counter.recordMiss();
+            }
+            return null;
+        }
+        V value = node.value;
+        if (expiry != null) {
+            long now = now();
+            long remaining = node.expiresAt - now;
+            if (remaining <= 0) {
+                if (counter != null) {
+                    counter.recordMiss();
+                }
+                tryMaintenance(); // Let the timer wheel catch up and remove it
+                return null;
+            }
+            node.expiresAt = deadline(now, expiry.expireAfterRead(key, value, now, remaining));
+        }
+        if (counter != null) {
+            counter.recordHit();
+        }
+        afterRead(node);
+        return value;
+    }
+
+    // Looks the value up without recording an access, a hit or a miss
+    V peek(K key) {
+        Node<K, V> node = data.get(key);
+        if (node == null || (expiry != null && node.expiresAt - now() <= 0)) {
+            return null;
+        }
+        return node.value;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void put(K key, V value) {
+        Objects.requireNonNull(value);
+        // Slot 0: the node created, if any; slot 1: an expired node it replaced
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        Node<K, V>[] added = new Node[2];
+        // The value replaced by an update, kept for the removal listener
+        Object[] replaced = new Object[1];
+        long now = (expiry != null) ? now() : 0;
+        Node<K, V> node = data.compute(key, (k, current) -> {
+            if (current == null || (expiry != null && current.expiresAt - now <= 0)) {
+                // An expired entry is replaced rather than revived; the old node is
+                // retired so that its pending policy updates are ignored
+                if (current != null) {
+                    current.retired = true;
+                    added[1] = current;
+                }
+                Node<K, V> created = added[0] = new Node<>(k, value);
+                if (expiry != null) {
+                    created.expiresAt = deadline(now, expiry.expireAfterCreate(k, value, now));
+                }
+                return created;
+            }
+            if (expiry != null) {
+                current.expiresAt = deadline(now, expiry.expireAfterUpdate(k, value, now, current.expiresAt - now));
+            }
+            replaced[0] = current.value;
+            current.value = value;
+            return current;
+        });
+        // The policy updates are queued before the listener runs, so nothing it does can skip them
+        Node<K, V> expired = added[1];
+        if (expired != null) {
+            afterWrite(() -> removeFromPolicy(expired));
+        }
+        if (added[0] != null) {
+            afterWrite(() -> addToPolicy(node));
+        } else {
+            afterRead(node); // Updating a value counts as an access
+        }
+        if (expired != null) {
+            StatsCounter counter = statsCounter;
+            if (counter != null) {
+                counter.recordEviction();
+            }
+            notifyRemoval(key, expired.value, RemovalCause.EXPIRED);
+        } else if (replaced[0] != null) {
+            notifyRemoval(key, (V) replaced[0], RemovalCause.REPLACED);
+        }
+    }
+
+    @Override
+    public void invalidate(K key) {
+        Node<K, V> node = data.remove(key);
+        if (node != null) {
+            node.retired = true;
+            afterWrite(() -> removeFromPolicy(node));
+            notifyRemoval(key, node.value, RemovalCause.EXPLICIT);
+        }
+    }
+
+    // Starts counting hits, misses, loads and evictions
+    public void enableStats() {
+        if (statsCounter == null) {
+            statsCounter = new StatsCounter();
+        }
+    }
+
+    // All zeros unless stats are enabled
+    public CacheStats stats() {
+        StatsCounter counter = statsCounter;
+        return (counter != null) ? counter.snapshot() : new CacheStats(0, 0, 0, 0, 0, 0);
+    }
+
+    StatsCounter statsCounter() {
+        return statsCounter;
+    }
+
+    // Notifies the listener of every removal. With a null executor it runs on the removing
+    // thread, for evictions that is the one doing maintenance while holding the eviction lock,
+    // so it must be quick. Otherwise the notifications are handed to the executor, and run on
+    // the removing thread after all if the executor rejects them.
+    public void setRemovalListener(RemovalListener<K, V> listener, Executor executor) {
+        this.removalExecutor = executor;
+        this.removalListener = listener;
+    }
+
+    @Override
+    public int size() {
+        return data.size();
+    }
+
+    // Brings the eviction order up to date, removes expired entries and evicts down to the maximum size
+    public void cleanUp() {
+        evictionLock.lock();
+        try {
+            maintenance();
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    private void notifyRemoval(K key, V value, RemovalCause cause) {
+        RemovalListener<K, V> listener = removalListener;
+        if (listener == null) {
+            return;
+        }
+        Executor executor = removalExecutor;
+        if (executor != null) {
+            try {
+                executor.execute(() -> listener.onRemoval(key, value, cause));
+                return;
+            } catch (RejectedExecutionException e) {
+                // A shut down or saturated executor: notify on this thread instead
+            }
+        }
+        try {
+            listener.onRemoval(key, value, cause);
+        } catch (RuntimeException e) {
+            // A failing listener must not break the cache, which may be mid-eviction
+        }
+    }
+
+    private long now() {
+        return ticker.getAsLong() - origin;
+    }
+
+    private static long deadline(long now, long duration) {
+        return now + Math.min(Math.max(duration, 0), MAXIMUM_EXPIRY);
+    }
+
+    private void afterRead(Node<K, V> node) {
+        int stripe = OpenHashMap.spread((int) Thread.currentThread().getId()) & readBufferMask;
+        if (!readBuffers[stripe].offer(node)) {
+            tryMaintenance();
+        }
+    }
+
+    private void afterWrite(Runnable task) {
+        while (!writeBuffer.offer(task)) {
+            // Back-pressure: the writers have outrun the drain, so do it ourselves
+            cleanUp();
+        }
+        tryMaintenance();
+    }
+
+    private void tryMaintenance() {
+        if (evictionLock.tryLock()) {
+            try {
+                maintenance();
+            } finally {
+                evictionLock.unlock();
+            }
+        }
+    }
+
+    // Runs with evictionLock held
+    private void maintenance() {
+        drainReadBuffers();
+        Runnable task;
+        while ((task = writeBuffer.poll()) != null) {
+            task.run();
+        }
+        if (timerWheel != null) {
+            timerWheel.advance(now(), this::expire);
+        }
+        evict();
+    }
+
+    private void drainReadBuffers() {
+        for (ReadBuffer<K, V> readBuffer : readBuffers) {
+            long head = readBuffer.readCounter;
+            long tail = readBuffer.writeCounter.get();
+            for (; head < tail; head++) {
+                int index = (int) (head & READ_BUFFER_MASK);
+                Node<K, V> node = readBuffer.buffer.get(index);
+                if (node == null) {
+                    break; // Claimed but not yet published, picked up by the next drain
+                }
+                readBuffer.buffer.lazySet(index, null);
+                if (!node.retired) {
+                    policy.get(node.key); // Moves the key to the most recently used end
+                    if (timerWheel != null) {
+                        timerWheel.reschedule(node); // The read may have moved its deadline
+                    }
+                }
+            }
+            readBuffer.readCounter = head;
+        }
+    }
+
+    private void addToPolicy(Node<K, V> node) {
+        if (!node.retired) {
+            Node<K, V> replaced = policy.put(node.key, node);
+            if (timerWheel != null) {
+                if (replaced != null) {
+                    timerWheel.deschedule(replaced);
+                }
+                timerWheel.schedule(node);
+            }
+        }
+    }
+
+    private void removeFromPolicy(Node<K, V> node) {
+        // The key may have been re-added since, with a new node that must stay. peek, since
+        // a get would promote that new node to most recently used.
+        if (policy.peek(node.key) == node) {
+            policy.remove(node.key);
+        }
+        if (timerWheel != null) {
+            timerWheel.deschedule(node);
+        }
+    }
+
+    // Called by the timer wheel, which has already unscheduled the node
+    private void expire(Node<K, V> node) {
+        policy.remove(node.key);
+        retire(node, RemovalCause.EXPIRED);
+    }
+
+    private void evict() {
+        while (policy.size() > maximumSize) {
+            Node<K, V> victim = policy.eldest().getValue();
+            policy.remove(victim.key);
+            if (timerWheel != null) {
+                timerWheel.deschedule(victim);
+            }
+            retire(victim, RemovalCause.SIZE);
+        }
+    }
+
+    private void retire(Node<K, V> node, RemovalCause cause) {
+        node.retired = true;
+        // Only remove the mapping if it still belongs to the node
+        boolean[] removed = new boolean[1];
+        data.compute(node.key, (k, current) -> {
+            if (current != node) {
+                return current;
+            }
+            removed[0] = true;
+            return null;
+        });
+        if (removed[0]) {
+            StatsCounter counter = statsCounter;
+            if (counter != null) {
+                counter.recordEviction();
+            }
+            notifyRemoval(node.key, node.value, cause);
+        }
+    }
+}
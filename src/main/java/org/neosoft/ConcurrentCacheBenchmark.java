@@ -0,0 +1,118 @@
+package org.neosoft;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+
+// Multi-threaded throughput of ConcurrentCache against an LRU LinkedHashMap behind one
+// global lock, which every read has to take because access order mutates the list.
+// The mix is 95% getIfPresent and 5% put, over a key range twice the cache size.
+// Run with: java org.neosoft.ConcurrentCacheBenchmark [maxThreads] [cacheSize] [millisPerRun]
+public class ConcurrentCacheBenchmark {
+    private static volatile Object sink;
+
+    public static void main(String[] args) throws InterruptedException {
+        int maxThreads = (args.length > 0) ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors();
+        int cacheSize = (args.length > 1) ? Integer.parseInt(args[1]) : 10_000;
+        long millis = (args.length > 2) ? Long.parseLong(args[2]) : 2000;
+
+        Integer[] keyPool = new Integer[cacheSize * 2];
+        for (int i = 0; i < keyPool.length; i++) {
+            keyPool[i] = i;
+        }
+
+        for (int threads = 1; threads <= maxThreads; threads <<= 1) {
+            ConcurrentCache<Integer, Integer> concurrent = new ConcurrentCache<>(cacheSize);
+            LockedLruCache<Integer, Integer> locked = new LockedLruCache<>(cacheSize);
+            fill(concurrent, keyPool);
+            fill(locked, keyPool);
+
+            double concurrentOps = run(concurrent, keyPool, threads, millis);
+            double lockedOps = run(locked, keyPool, threads, millis);
+            System.out.printf("%2d threads  ConcurrentCache %8.2f Mops/s  locked LRU %8.2f Mops/s%n",
+                    threads, concurrentOps / 1e6, lockedOps / 1e6);
+        }
+    }
+
+    private static void fill(Cache<Integer, Integer> cache, Integer[] keyPool) {
+        for (int i = 0; i < keyPool.length; i += 2) {
+            cache.put(keyPool[i], keyPool[i]);
+        }
+    }
+
+    private static double run(Cache<Integer, Integer> cache, Integer[] keyPool, int threads, long millis)
+            throws InterruptedException {
+        long[] ops = new long[threads];
+        CountDownLatch start = new CountDownLatch(1);
+        Thread[] workers = new Thread[threads];
+        long[] deadline = new long[1];
+        for (int t = 0; t < threads; t++) {
+            final int id = t;
+            workers[t] = new Thread(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                long done = 0;
+                long sum = 0;
+                while ((done & 1023) != 0 || System.nanoTime() < deadline[0]) {
+                    Integer key = keyPool[random.nextInt(keyPool.length)];
+                    if (random.nextInt(100) < 95) {
+                        Integer value = cache.getIfPresent(key);
+                        if (value != null) {
+                            sum += value;
+                        }
+                    } else {
+                        cache.put(key, key);
+                    }
+                    done++;
+                }
+                ops[id] = done;
+                sink = sum;
+            });
+            workers[t].start();
+        }
+
+        deadline[0] = System.nanoTime() + millis * 1_000_000;
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+
+        long total = 0;
+        for (long n : ops) {
+            total += n;
+        }
+        return total * 1000.0 / millis;
+    }
+
+    // The baseline: every operation, reads included, serialized on one monitor
+    private static final class LockedLruCache<K, V> implements Cache<K, V> {
+        private final LinkedHashMap<K, V> map;
+
+        LockedLruCache(int maximumSize) {
+            map = new LinkedHashMap<>(16, 0.75f, true, maximumSize);
+        }
+
+        @Override
+        public synchronized V getIfPresent(K key) {
+            return map.get(key);
+        }
+
+        @Override
+        public synchronized void put(K key, V value) {
+            map.put(key, value);
+        }
+
+        @Override
+        public synchronized void invalidate(K key) {
+            map.remove(key);
+        }
+
+        @Override
+        public synchronized int size() {
+            return map.size();
+        }
+    }
+}
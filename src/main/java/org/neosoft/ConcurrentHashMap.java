@@ -0,0 +1,688 @@
+package org.neosoft;
+
+import java.util.AbstractCollection;
+import java.util.AbstractSet;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+// Thread-safe org.neosoft.Map. Reads take no locks: bins are read from an AtomicReferenceArray
+// and node values and links are volatile. Inserting into an empty bin is a single CAS, any
+// other update locks only the first node of its bin. When the table grows, every thread that
+// runs into the resize helps moving bins. The size lives in a LongAdder, whose striped cells
+// keep writers from contending on a single counter. Null keys and values are not supported.
+public class ConcurrentHashMap<K, V> implements Map<K, V> {
+    private static final int DEFAULT_CAPACITY = 16;
+    private static final int MAXIMUM_CAPACITY = 1 << 30;
+    // Hash of forwarding nodes; ordinary hashes are made non-negative by spread()
+    private static final int MOVED = -1;
+    // Hash of the placeholder that locks an empty bin while a compute function runs
+    private static final int RESERVED = -2;
+    private static final int HASH_BITS = 0x7fffffff;
+    // Smallest number of bins a thread claims at a time while helping a resize
+    private static final int MIN_TRANSFER_STRIDE = 16;
+
+    private volatile AtomicReferenceArray<Node<K, V>> table;
+    private volatile int threshold;
+    private volatile Resize<K, V> resize;
+    private final Object resizeLock = new Object();
+    private final LongAdder count = new LongAdder();
+
+    static class Node<K, V> {
+        final int hash;
+        final K key;
+        volatile V value;
+        volatile Node<K, V> next;
+
+        Node(int hash, K key, V value, Node<K, V> next) {
+            this.hash = hash;
+            this.key = key;
+            this.value = value;
+            this.next = next;
+        }
+    }
+
+    // Put at the head of a bin that has been moved to the next table
+    static final class ForwardingNode<K, V> extends Node<K, V> {
+        final AtomicReferenceArray<Node<K, V>> nextTable;
+
+        ForwardingNode(AtomicReferenceArray<Node<K, V>> nextTable) {
+            super(MOVED, null, null, null);
+            this.nextTable = nextTable;
+        }
+    }
+
+    // State of one table doubling. Threads claim ranges of bins by counting transferIndex
+    // down, and whoever moves the last bin publishes the new table.
+    static final class Resize<K, V> {
+        final AtomicReferenceArray<Node<K, V>> oldTable;
+        final AtomicReferenceArray<Node<K, V>> newTable;
+        final ForwardingNode<K, V> forwarding;
+        final AtomicInteger transferIndex;
+        final AtomicInteger moved = new AtomicInteger();
+        final int stride;
+
+        Resize(AtomicReferenceArray<Node<K, V>> oldTable) {
+            int n = oldTable.length();
+            this.oldTable = oldTable;
+            this.newTable = new AtomicReferenceArray<>(n << 1);
+            this.forwarding = new ForwardingNode<>(newTable);
+            this.transferIndex = new AtomicInteger(n);
+            int ncpu = Runtime.getRuntime().availableProcessors();
+            this.stride = Math.max((ncpu > 1) ? (n >>> 3) / ncpu : n, MIN_TRANSFER_STRIDE);
+        }
+    }
+
+    public ConcurrentHashMap() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public ConcurrentHashMap(int initialCapacity) {
+        if (initialCapacity <= 0) {
+            throw new IllegalArgumentException("Invalid initial capacity: " + initialCapacity);
+        }
+        int n = OpenHashMap.tableSizeFor(initialCapacity + (initialCapacity >>> 1) + 1);
+        this.table = new AtomicReferenceArray<>(n);
+        this.threshold = n - (n >>> 2);
+    }
+
+    static int spread(int h) {
+        return (h ^ (h >>> 16)) & HASH_BITS;
+    }
+
+    @Override
+    public int size() {
+        long n = count.sum();
+        return (n < 0) ? 0 : (n > Integer.MAX_VALUE) ? Integer.MAX_VALUE : (int) n;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return count.sum() <= 0;
+    }
+
+    @Override
+    public V get(K key) {
+        int h = spread(key.hashCode());
+        AtomicReferenceArray<Node<K, V>> tab = table;
+        for (;;) {
+            Node<K, V> e = tab.get(h & (tab.length() - 1));
+            if (e == null) {
+                return null;
+            }
+            if (e.hash == MOVED) {
+                tab = ((ForwardingNode<K, V>) e).nextTable;
+                continue;
+            }
+            for (; e != null; e = e.next) {
+                if (e.hash == h && (e.key == key || key.equals(e.key))) {
+                    return e.value;
+                }
+            }
+            return null;
+        }
+    }
+
+    @Override
+    public boolean containsKey(K key) {
+        return get(key) != null;
+    }
+
+    @Override
+    public V put(K key, V value) {
+        if (key == null || value == null) {
+            throw new NullPointerException();
+        }
+        int h = spread(key.hashCode());
+        AtomicReferenceArray<Node<K, V>> tab = table;
+        for (;;) {
+            int i = h & (tab.length() - 1);
+            Node<K, V> f = tab.get(i);
+            if (f == null) {
+                // Empty bin: no lock needed, a lost CAS just retries
+                if (tab.compareAndSet(i, null, new Node<>(h, key, value, null))) {
+                    break;
+                }
+            } else if (f.hash == MOVED) {
+                tab = helpTransfer(tab, (ForwardingNode<K, V>) f);
+            } else {
+                synchronized (f) {
+                    if (tab.get(i) != f) {
+                        continue; // The head changed before we got the lock
+                    }
+                    checkNotReserved(f);
+                    Node<K, V> e = f;
+                    for (;;) {
+                        if (e.hash == h && (e.key == key || key.equals(e.key))) {
+                            V oldValue = e.value;
+                            e.value = value;
+                            return oldValue;
+                        }
+                        if (e.next == null) {
+                            e.next = new Node<>(h, key, value, null);
+                            break;
+                        }
+                        e = e.next;
+                    }
+                }
+                break;
+            }
+        }
+
+        count.increment();
+        if (count.sum() >= threshold) {
+            tryResize(tab);
+        }
+        return null;
+    }
+
+    @Override
+    public V remove(K key) {
+        int h = spread(key.hashCode());
+        AtomicReferenceArray<Node<K, V>> tab = table;
+        for (;;) {
+            int i = h & (tab.length() - 1);
+            Node<K, V> f = tab.get(i);
+            if (f == null) {
+                return null;
+            }
+            if (f.hash == MOVED) {
+                tab = helpTransfer(tab, (ForwardingNode<K, V>) f);
+                continue;
+            }
+            synchronized (f) {
+                if (tab.get(i) != f) {
+                    continue;
+                }
+                Node<K, V> pred = null;
+                for (Node<K, V> e = f; e != null; pred = e, e = e.next) {
+                    if (e.hash == h && (e.key == key || key.equals(e.key))) {
+                        if (pred == null) {
+                            tab.set(i, e.next);
+                        } else {
+                            pred.next = e.next;
+                        }
+                        count.decrement();
+                        return e.value;
+                    }
+                }
+                return null;
+            }
+        }
+    }
+
+    @Override
+    public void clear() {
+        AtomicReferenceArray<Node<K, V>> tab = table;
+        int i = 0;
+        while (i < tab.length()) {
+            Node<K, V> f = tab.get(i);
+            if (f == null) {
+                i++;
+            } else if (f.hash == MOVED) {
+                // Start over on the grown table
+                tab = helpTransfer(tab, (ForwardingNode<K, V>) f);
+                i = 0;
+            } else {
+                synchronized (f) {
+                    if (tab.get(i) == f) {
+                        checkNotReserved(f);
+                        long removed = 0;
+                        for (Node<K, V> e = f; e != null; e = e.next) {
+                            removed++;
+                        }
+                        tab.set(i, null);
+                        count.add(-removed);
+                        i++;
+                    }
+                }
+            }
+        }
+    }
+
+    // *** Atomic compound operations: the function runs once, holding the bin's lock ***
+
+    @Override
+    public V getOrDefault(K key, V defaultValue) {
+        V value = get(key);
+        return (value != null) ? value : defaultValue;
+    }
+
+    @Override
+    public V putIfAbsent(K key, V value) {
+        if (value == null) {
+            throw new NullPointerException();
+        }
+        V current = get(key);
+        return (current != null) ? current : doCompute(key, (k, old) -> value, true, true);
+    }
+
+    @Override
+    public V computeIfAbsent(K key, Function<? super K, ? extends V> mappingFunction) {
+        Objects.requireNonNull(mappingFunction);
+        V current = get(key); // Lock-free fast path for the common hit
+        return (current != null) ? current : doCompute(key, (k, old) -> mappingFunction.apply(k), true, false);
+    }
+
+    @Override
+    public V compute(K key, BiFunction<? super K, ? super V, ? extends V> remappingFunction) {
+        Objects.requireNonNull(remappingFunction);
+        return doCompute(key, remappingFunction, false, false);
+    }
+
+    @Override
+    public V merge(K key, V value, BiFunction<? super V, ? super V, ? extends V> remappingFunction) {
+        Objects.requireNonNull(value);
+        Objects.requireNonNull(remappingFunction);
+        return doCompute(key, (k, old) -> (old == null) ? value : remappingFunction.apply(old, value), false, false);
+    }
+
+    // Applies fn to the current value (null if absent) and stores the result, removing the
+    // mapping when it is null. With onlyIfAbsent an existing value is kept and fn is not called.
+    // Returns the previous value when returnPrevious is set, otherwise the resulting value.
+    private V doCompute(K key, BiFunction<? super K, ? super V, ? extends V> fn,
+                        boolean onlyIfAbsent, boolean returnPrevious) {
+        int h = spread(key.hashCode());
+        AtomicReferenceArray<Node<K, V>> tab = table;
+        V previous = null;
+        V value;
+        int delta = 0;
+        for (;;) {
+            int i = h & (tab.length() - 1);
+            Node<K, V> f = tab.get(i);
+            if (f == null) {
+                // Lock the empty bin with a placeholder while the function runs
+                Node<K, V> reservation = new Node<>(RESERVED, null, null, null);
+                synchronized (reservation) {
+                    if (tab.compareAndSet(i, null, reservation)) {
+                        Node<K, V> node = null;
+                        try {
+                            value = fn.apply(key, null);
+                            if (value != null) {
+                                node = new Node<>(h, key, value, null);
+                                delta = 1;
+                            }
+                        } finally {
+                            tab.set(i, node);
+                        }
+                        break;
+                    }
+                }
+            } else if (f.hash == MOVED) {
+                tab = helpTransfer(tab, (ForwardingNode<K, V>) f);
+            } else {
+                synchronized (f) {
+                    if (tab.get(i) != f) {
+                        continue;
+                    }
+                    checkNotReserved(f);
+                    Node<K, V> pred = null;
+                    Node<K, V> e = f;
+                    for (;;) {
+                        if (e == null) {
+                            value = fn.apply(key, null);
+                            if (value != null) {
+                                pred.next = new Node<>(h, key, value, null);
+                                delta = 1;
+                            }
+                            break;
+                        }
+                        if (e.hash == h && (e.key == key || key.equals(e.key))) {
+                            previous = e.value;
+                            if (onlyIfAbsent) {
+                                value = previous;
+                            } else {
+                                value = fn.apply(key, previous);
+                                if (value != null) {
+                                    e.value = value;
+                                } else {
+                                    delta = -1;
+                                    if (pred == null) {
+                                        tab.set(i, e.next);
+                                    } else {
+                                        pred.next = e.next;
+                                    }
+                                }
+                            }
+                            break;
+                        }
+                        pred = e;
+                        e = e.next;
+                    }
+                }
+                break;
+            }
+        }
+
+        if (delta != 0) {
+            count.add(delta);
+            if (delta > 0 && count.sum() >= threshold) {
+                tryResize(tab);
+            }
+        }
+        return returnPrevious ? previous : value;
+    }
+
+    // A compute function that updates its own bin would find the placeholder it is running under
+    private static void checkNotReserved(Node<?, ?> f) {
+        if (f.hash == RESERVED) {
+            throw new IllegalStateException("Recursive update");
+        }
+    }
+
+    private void tryResize(AtomicReferenceArray<Node<K, V>> tab) {
+        Resize<K, V> r;
+        // Starting a resize is rare, so it is serialized; moving the bins is not
+        synchronized (resizeLock) {
+            r = resize;
+            if (r == null) {
+                if (tab != table || tab.length() >= MAXIMUM_CAPACITY || count.sum() < threshold) {
+                    return;
+                }
+                resize = r = new Resize<>(tab);
+            }
+        }
+        transfer(r);
+    }
+
+    // Helps the resize that forwarded a bin of tab and returns the table to retry on
+    private AtomicReferenceArray<Node<K, V>> helpTransfer(AtomicReferenceArray<Node<K, V>> tab, ForwardingNode<K, V> f) {
+        Resize<K, V> r = resize;
+        if (r != null && r.oldTable == tab) {
+            transfer(r);
+        }
+        return f.nextTable;
+    }
+
+    private void transfer(Resize<K, V> r) {
+        int n = r.oldTable.length();
+        for (;;) {
+            int hi = r.transferIndex.get();
+            if (hi <= 0) {
+                return; // Every range has been claimed
+            }
+            int lo = Math.max(hi - r.stride, 0);
+            if (!r.transferIndex.compareAndSet(hi, lo)) {
+                continue;
+            }
+            for (int i = hi - 1; i >= lo; i--) {
+                moveBin(r, i, n);
+            }
+            if (r.moved.addAndGet(hi - lo) == n) {
+                // Last range done: publish the new table before clearing the resize
+                int newLength = n << 1;
+                table = r.newTable;
+                threshold = newLength - (newLength >>> 2);
+                resize = null;
+                return;
+            }
+        }
+    }
+
+    // Splits bin i into bins i and i + n of the new table. Nodes are copied rather than
+    // relinked, since readers may still be walking the old chain.
+    private void moveBin(Resize<K, V> r, int i, int n) {
+        AtomicReferenceArray<Node<K, V>> tab = r.oldTable;
+        for (;;) {
+            Node<K, V> f = tab.get(i);
+            if (f == null) {
+                if (tab.compareAndSet(i, null, r.forwarding)) {
+                    return;
+                }
+                continue;
+            }
+            synchronized (f) {
+                if (tab.get(i) != f) {
+                    continue;
+                }
+                checkNotReserved(f);
+                Node<K, V> lo = null;
+                Node<K, V> hi = null;
+                for (Node<K, V> e = f; e != null; e = e.next) {
+                    if ((e.hash & n) == 0) {
+                        lo = new Node<>(e.hash, e.key, e.value, lo);
+                    } else {
+                        hi = new Node<>(e.hash, e.key, e.value, hi);
+                    }
+                }
+                r.newTable.set(i, lo);
+                r.newTable.set(i + n, hi);
+                tab.set(i, r.forwarding);
+                return;
+            }
+        }
+    }
+
+    // The views are weakly consistent: they never throw ConcurrentModificationException
+    // and reflect some, but not necessarily all, updates made while iterating
+    @Override
+    public Set<K> keySet() {
+        return new KeySet();
+    }
+
+    @Override
+    public Collection<V> values() {
+        return new Values();
+    }
+
+    @Override
+    public Set<Map.Entry<K, V>> entrySet() {
+        return new EntrySet();
+    }
+
+    // A bin still to be visited in a newer table, pushed when a forwarded bin is met
+    private static final class PendingBin<K, V> {
+        final AtomicReferenceArray<Node<K, V>> table;
+        final int index;
+        final PendingBin<K, V> next;
+
+        PendingBin(AtomicReferenceArray<Node<K, V>> table, int index, PendingBin<K, V> next) {
+            this.table = table;
+            this.index = index;
+            this.next = next;
+        }
+    }
+
+    private abstract class BaseIterator<T> implements Iterator<T> {
+        private final AtomicReferenceArray<Node<K, V>> tab = table;
+        private int index;
+        private PendingBin<K, V> pending;
+        private Node<K, V> next;
+        private Node<K, V> lastReturned;
+
+        BaseIterator() {
+            advance(null);
+        }
+
+        private void advance(Node<K, V> e) {
+            e = (e == null) ? null : e.next;
+            while (e == null) {
+                AtomicReferenceArray<Node<K, V>> t;
+                int i;
+                if (pending != null) {
+                    t = pending.table;
+                    i = pending.index;
+                    pending = pending.next;
+                } else if (index < tab.length()) {
+                    t = tab;
+                    i = index++;
+                } else {
+                    break;
+                }
+                Node<K, V> f = t.get(i);
+                if (f != null && f.hash == MOVED) {
+                    // Bin i was split into bins i and i + n of the next table
+                    AtomicReferenceArray<Node<K, V>> nt = ((ForwardingNode<K, V>) f).nextTable;
+                    pending = new PendingBin<>(nt, i, new PendingBin<>(nt, i + t.length(), pending));
+                } else if (f == null || f.hash != RESERVED) {
+                    e = f;
+                }
+            }
+            next = e;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        final Node<K, V> nextNode() {
+            Node<K, V> e = next;
+            if (e == null) {
+                throw new NoSuchElementException();
+            }
+            lastReturned = e;
+            advance(e);
+            return e;
+        }
+
+        @Override
+        public void remove() {
+            if (lastReturned == null) {
+                throw new IllegalStateException();
+            }
+            ConcurrentHashMap.this.remove(lastReturned.key);
+            lastReturned = null;
+        }
+    }
+
+    private final class KeyIterator extends BaseIterator<K> {
+        @Override
+        public K next() {
+            return nextNode().key;
+        }
+    }
+
+    private final class ValueIterator extends BaseIterator<V> {
+        @Override
+        public V next() {
+            return nextNode().value;
+        }
+    }
+
+    private final class EntryIterator extends BaseIterator<Map.Entry<K, V>> {
+        @Override
+        public Map.Entry<K, V> next() {
+            Node<K, V> e = nextNode();
+            return new MapEntry<>(e.key, e.value, ConcurrentHashMap.this);
+        }
+    }
+
+    private final class KeySet extends AbstractSet<K> {
+        @Override
+        public Iterator<K> iterator() {
+            return new KeyIterator();
+        }
+
+        @Override
+        public int size() {
+            return ConcurrentHashMap.this.size();
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public boolean contains(Object o) {
+            return containsKey((K) o);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public boolean remove(Object o) {
+            return ConcurrentHashMap.this.remove((K) o) != null;
+        }
+
+        @Override
+        public void clear() {
+            ConcurrentHashMap.this.clear();
+        }
+    }
+
+    private final class Values extends AbstractCollection<V> {
+        @Override
+        public Iterator<V> iterator() {
+            return new ValueIterator();
+        }
+
+        @Override
+        public int size() {
+            return ConcurrentHashMap.this.size();
+        }
+
+        @Override
+        public void clear() {
+            ConcurrentHashMap.this.clear();
+        }
+    }
+
+    private final class EntrySet extends AbstractSet<Map.Entry<K, V>> {
+        @Override
+        public Iterator<Map.Entry<K, V>> iterator() {
+            return new EntryIterator();
+        }
+
+        @Override
+        public int size() {
+            return ConcurrentHashMap.this.size();
+        }
+
+        @Override
+        public void clear() {
+            ConcurrentHashMap.this.clear();
+        }
+    }
+
+    // Snapshot of a mapping handed out by the entry iterator; setValue writes through
+    private static final class MapEntry<K, V> implements Map.Entry<K, V> {
+        private final K key;
+        private V value;
+        private final ConcurrentHashMap<K, V> map;
+
+        MapEntry(K key, V value, ConcurrentHashMap<K, V> map) {
+            this.key = key;
+            this.value = value;
+            this.map = map;
+        }
+
+        @Override
+        public K getKey() {
+            return key;
+        }
+
+        @Override
+        public V getValue() {
+            return value;
+        }
+
+        @Override
+        public V setValue(V value) {
+            if (value == null) {
+                throw new NullPointerException();
+            }
+            V oldValue = this.value;
+            this.value = value;
+            map.put(key, value);
+            return oldValue;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Map.Entry)) {
+                return false;
+            }
+            Map.Entry<?, ?> e = (Map.Entry<?, ?>) o;
+            return Objects.equals(key, e.getKey()) && Objects.equals(value, e.getValue());
+        }
+
+        @Override
+        public int hashCode() {
+            return key.hashCode() ^ value.hashCode();
+        }
+    }
+}
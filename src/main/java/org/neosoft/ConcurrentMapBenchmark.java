@@ -0,0 +1,152 @@
+package org.neosoft;
+
+import java.util.Collection;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+
+// Multi-threaded throughput of ConcurrentHashMap against a HashMap behind one global lock,
+// with a read-mostly mix of 90% get, 5% put and 5% remove over a fixed key range.
+// Run with: java org.neosoft.ConcurrentMapBenchmark [maxThreads] [keys] [millisPerRun]
+public class ConcurrentMapBenchmark {
+    private static volatile Object sink;
+
+    public static void main(String[] args) throws InterruptedException {
+        int maxThreads = (args.length > 0) ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors();
+        int keys = (args.length > 1) ? Integer.parseInt(args[1]) : 1_000_000;
+        long millis = (args.length > 2) ? Long.parseLong(args[2]) : 2000;
+
+        Integer[] keyPool = new Integer[keys];
+        for (int i = 0; i < keys; i++) {
+            keyPool[i] = i;
+        }
+
+        for (int threads = 1; threads <= maxThreads; threads <<= 1) {
+            ConcurrentHashMap<Integer, Integer> concurrent = new ConcurrentHashMap<>();
+            LockedMap<Integer, Integer> locked = new LockedMap<>(new HashMap<Integer, Integer>());
+            fill(concurrent, keyPool);
+            fill(locked, keyPool);
+
+            double concurrentOps = run(concurrent, keyPool, threads, millis);
+            double lockedOps = run(locked, keyPool, threads, millis);
+            System.out.printf("%2d threads  ConcurrentHashMap %8.2f Mops/s  locked HashMap %8.2f Mops/s%n",
+                    threads, concurrentOps / 1e6, lockedOps / 1e6);
+        }
+    }
+
+    private static void fill(Map<Integer, Integer> map, Integer[] keyPool) {
+        for (int i = 0; i < keyPool.length; i += 2) {
+            map.put(keyPool[i], keyPool[i]);
+        }
+    }
+
+    private static double run(Map<Integer, Integer> map, Integer[] keyPool, int threads, long millis)
+            throws InterruptedException {
+        long[] ops = new long[threads];
+        CountDownLatch start = new CountDownLatch(1);
+        Thread[] workers = new Thread[threads];
+        long[] deadline = new long[1];
+        for (int t = 0; t < threads; t++) {
+            final int id = t;
+            workers[t] = new Thread(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                long done = 0;
+                long sum = 0;
+                while ((done & 1023) != 0 || System.nanoTime() < deadline[0]) {
+                    Integer key = keyPool[random.nextInt(keyPool.length)];
+                    int op = random.nextInt(100);
+                    if (op < 90) {
+                        Integer value = map.get(key);
+                        if (value != null) {
+                            sum += value;
+                        }
+                    } else if (op < 95) {
+                        map.put(key, key);
+                    } else {
+                        map.remove(key);
+                    }
+                    done++;
+                }
+                ops[id] = done;
+                sink = sum;
+            });
+            workers[t].start();
+        }
+
+        deadline[0] = System.nanoTime() + millis * 1_000_000;
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+
+        long total = 0;
+        for (long n : ops) {
+            total += n;
+        }
+        return total * 1000.0 / millis;
+    }
+
+    // The baseline: every operation serialized on one monitor
+    private static final class LockedMap<K, V> implements Map<K, V> {
+        private final HashMap<K, V> map;
+
+        LockedMap(HashMap<K, V> map) {
+            this.map = map;
+        }
+
+        @Override
+        public synchronized int size() {
+            return map.size();
+        }
+
+        @Override
+        public synchronized boolean isEmpty() {
+            return map.isEmpty();
+        }
+
+        @Override
+        public synchronized V put(K key, V value) {
+            return map.put(key, value);
+        }
+
+        @Override
+        public synchronized V get(K key) {
+            return map.get(key);
+        }
+
+        @Override
+        public synchronized V remove(K key) {
+            return map.remove(key);
+        }
+
+        @Override
+        public synchronized boolean containsKey(K key) {
+            return map.containsKey(key);
+        }
+
+        @Override
+        public synchronized void clear() {
+            map.clear();
+        }
+
+        @Override
+        public Set<K> keySet() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Collection<V> values() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Set<Map.Entry<K, V>> entrySet() {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
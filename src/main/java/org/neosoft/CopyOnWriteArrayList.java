@@ -0,0 +1,369 @@
+package org.neosoft;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.RandomAccess;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
+
+// Thread-safe list for data that is read constantly and written rarely, such as configuration
+// or routing tables shared by many threads.
+//
+// Reads never lock: they load the current array from a volatile field and work on it. Every
+// write copies the array under a lock, changes the copy and publishes it, so an array that has
+// been published never changes. Iterators, list iterators, spliterators and forEach run over
+// the array current when they started and never throw ConcurrentModificationException;
+// iterators cannot modify the list. subList is a view of that snapshot too, so it is read-only.
+//
+// Each write costs O(n), so batch changes with addAll, removeIf or replaceAll rather than
+// element by element. snapshot() hands the current array to an ImmutableList without copying.
+public class CopyOnWriteArrayList<E> extends AbstractList<E> implements RandomAccess {
+    private final ReentrantLock lock = new ReentrantLock();
+    private volatile Object[] elements;
+
+    public CopyOnWriteArrayList() {
+        this.elements = new Object[0];
+    }
+
+    public CopyOnWriteArrayList(Collection<? extends E> c) {
+        Object[] a = c.toArray();
+        this.elements = Arrays.copyOf(a, a.length, Object[].class);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <E> E elementAt(Object[] es, int index) {
+        return (E) es[index];
+    }
+
+    // The current contents, shared with no writer
+    public ImmutableList<E> snapshot() {
+        return ImmutableList.wrap(elements);
+    }
+
+    @Override
+    public int size() {
+        return elements.length;
+    }
+
+    @Override
+    public E get(int index) {
+        Object[] es = elements;
+        if (index < 0 || index >= es.length)
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + es.length);
+        return elementAt(es, index);
+    }
+
+    @Override
+    public int indexOf(Object o) {
+        Object[] es = elements;
+        for (int i = 0; i < es.length; i++)
+            if (Objects.equals(o, es[i]))
+                return i;
+        return -1;
+    }
+
+    @Override
+    public int lastIndexOf(Object o) {
+        Object[] es = elements;
+        for (int i = es.length - 1; i >= 0; i--)
+            if (Objects.equals(o, es[i]))
+                return i;
+        return -1;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return indexOf(o) >= 0;
+    }
+
+    @Override
+    public Object[] toArray() {
+        return elements.clone();
+    }
+
+    @Override
+    public E set(int index, E element) {
+        lock.lock();
+        try {
+            Object[] es = elements;
+            E oldValue = get(index);
+            if (oldValue != element) {
+                es = es.clone();
+                es[index] = element;
+                elements = es;
+            }
+            return oldValue;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean add(E e) {
+        lock.lock();
+        try {
+            Object[] es = elements;
+            Object[] copy = Arrays.copyOf(es, es.length + 1);
+            copy[es.length] = e;
+            elements = copy;
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void add(int index, E element) {
+        lock.lock();
+        try {
+            Object[] es = elements;
+            if (index < 0 || index > es.length)
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + es.length);
+            Object[] copy = new Object[es.length + 1];
+            System.arraycopy(es, 0, copy, 0, index);
+            System.arraycopy(es, index, copy, index + 1, es.length - index);
+            copy[index] = element;
+            elements = copy;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Adds the element unless it is already present, as one atomic step
+    public boolean addIfAbsent(E e) {
+        lock.lock();
+        try {
+            if (contains(e))
+                return false;
+            return add(e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // One copy for the whole collection
+    @Override
+    public boolean addAll(Collection<? extends E> c) {
+        Object[] a = c.toArray();
+        if (a.length == 0)
+            return false;
+        lock.lock();
+        try {
+            Object[] es = elements;
+            Object[] copy = Arrays.copyOf(es, es.length + a.length);
+            System.arraycopy(a, 0, copy, es.length, a.length);
+            elements = copy;
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public E remove(int index) {
+        lock.lock();
+        try {
+            Object[] es = elements;
+            E oldValue = get(index);
+            Object[] copy = new Object[es.length - 1];
+            System.arraycopy(es, 0, copy, 0, index);
+            System.arraycopy(es, index + 1, copy, index, es.length - index - 1);
+            elements = copy;
+            return oldValue;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        lock.lock();
+        try {
+            int index = indexOf(o);
+            if (index < 0)
+                return false;
+            remove(index);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Copies the survivors once, however many elements match
+    @Override
+    public boolean removeIf(Predicate<? super E> filter) {
+        Objects.requireNonNull(filter);
+        lock.lock();
+        try {
+            Object[] es = elements;
+            Object[] kept = new Object[es.length];
+            int w = 0;
+            for (int i = 0; i < es.length; i++)
+                if (!filter.test(elementAt(es, i)))
+                    kept[w++] = es[i];
+            if (w == es.length)
+                return false;
+            elements = Arrays.copyOf(kept, w);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean removeAll(Collection<?> c) {
+        Objects.requireNonNull(c);
+        return removeIf(c::contains);
+    }
+
+    @Override
+    public boolean retainAll(Collection<?> c) {
+        Objects.requireNonNull(c);
+        return removeIf(e -> !c.contains(e));
+    }
+
+    @Override
+    public void replaceAll(UnaryOperator<E> operator) {
+        Objects.requireNonNull(operator);
+        lock.lock();
+        try {
+            Object[] es = elements.clone();
+            for (int i = 0; i < es.length; i++)
+                es[i] = operator.apply(elementAt(es, i));
+            elements = es;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void sort(Comparator<? super E> c) {
+        lock.lock();
+        try {
+            Object[] es = elements.clone();
+            Arrays.sort((E[]) es, c);
+            elements = es;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void clear() {
+        lock.lock();
+        try {
+            elements = new Object[0];
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void forEach(Consumer<? super E> action) {
+        Objects.requireNonNull(action);
+        Object[] es = elements;
+        for (int i = 0; i < es.length; i++)
+            action.accept(elementAt(es, i));
+    }
+
+    @Override
+    public Iterator<E> iterator() {
+        return new SnapshotIterator<>(elements, 0);
+    }
+
+    @Override
+    public ListIterator<E> listIterator() {
+        return new SnapshotIterator<>(elements, 0);
+    }
+
+    @Override
+    public ListIterator<E> listIterator(int index) {
+        Object[] es = elements;
+        if (index < 0 || index > es.length)
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + es.length);
+        return new SnapshotIterator<>(es, index);
+    }
+
+    // An immutable view of the current contents; later writes to this list do not show in it
+    @Override
+    public List<E> subList(int fromIndex, int toIndex) {
+        return snapshot().subList(fromIndex, toIndex);
+    }
+
+    @Override
+    public Spliterator<E> spliterator() {
+        return Spliterators.spliterator(elements, Spliterator.ORDERED | Spliterator.IMMUTABLE);
+    }
+
+    // Iterates over one published array, which no writer touches
+    private static final class SnapshotIterator<E> implements ListIterator<E> {
+        private final Object[] snapshot;
+        private int cursor;
+
+        SnapshotIterator(Object[] snapshot, int cursor) {
+            this.snapshot = snapshot;
+            this.cursor = cursor;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return cursor < snapshot.length;
+        }
+
+        @Override
+        public E next() {
+            if (cursor >= snapshot.length)
+                throw new NoSuchElementException();
+            return elementAt(snapshot, cursor++);
+        }
+
+        @Override
+        public boolean hasPrevious() {
+            return cursor > 0;
+        }
+
+        @Override
+        public E previous() {
+            if (cursor <= 0)
+                throw new NoSuchElementException();
+            return elementAt(snapshot, --cursor);
+        }
+
+        @Override
+        public int nextIndex() {
+            return cursor;
+        }
+
+        @Override
+        public int previousIndex() {
+            return cursor - 1;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void set(E e) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void add(E e) {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package org.neosoft;
+
+import java.util.concurrent.TimeUnit;
+
+// Decides how long a cache entry lives, in nanoseconds from the current time. Each method
+// returns the entry's new remaining lifetime; returning currentDuration leaves it unchanged.
+// Lifetimes are capped at about 146 years, which is as good as never expiring.
+public interface Expiry<K, V> {
+    long expireAfterCreate(K key, V value, long currentTime);
+
+    long expireAfterUpdate(K key, V value, long currentTime, long currentDuration);
+
+    long expireAfterRead(K key, V value, long currentTime, long currentDuration);
+
+    // Entries expire a fixed time after they were created or last replaced
+    static <K, V> Expiry<K, V> afterWrite(long duration, TimeUnit unit) {
+        long nanos = toNanos(duration, unit);
+        return new Expiry<K, V>() {
+            @Override
+            public long expireAfterCreate(K key, V value, long currentTime) {
+                return nanos;
+            }
+
+            @Override
+            public long expireAfterUpdate(K key, V value, long currentTime, long currentDuration) {
+                return nanos;
+            }
+
+            @Override
+            public long expireAfterRead(K key, V value, long currentTime, long currentDuration) {
+                return currentDuration;
+            }
+        };
+    }
+
+    // Entries expire a fixed time after they were last read or written
+    static <K, V> Expiry<K, V> afterAccess(long duration, TimeUnit unit) {
+        long nanos = toNanos(duration, unit);
+        return new Expiry<K, V>() {
+            @Override
+            public long expireAfterCreate(K key, V value, long currentTime) {
+                return nanos;
+            }
+
+            @Override
+            public long expireAfterUpdate(K key, V value, long currentTime, long currentDuration) {
+                return nanos;
+            }
+
+            @Override
+            public long expireAfterRead(K key, V value, long currentTime, long currentDuration) {
+                return nanos;
+            }
+        };
+    }
+
+    static long toNanos(long duration, TimeUnit unit) {
+        if (duration < 0) {
+            throw new IllegalArgumentException("Invalid duration: " + duration);
+        }
+        return unit.toNanos(duration);
+    }
+}
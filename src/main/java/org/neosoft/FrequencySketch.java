@@ -0,0 +1,70 @@
+package org.neosoft;
+
+// Count-min sketch of 4-bit counters estimating how often each key was seen recently.
+// Every key maps to one counter in each of four rows; its estimate is the smallest of
+// them, so collisions can only over-count. Sixteen counters are packed per long.
+//
+// Aging: once the number of increments reaches ten times the cache size, every counter
+// is halved, so old popularity fades and the sketch tracks the current workload.
+final class FrequencySketch {
+    private static final long RESET_MASK = 0x7777777777777777L;
+    private static final int[] SEEDS = {0x97CB3127, 0xB4B82E7D, 0x7E7A7A8B, 0xC2B2AE3D};
+
+    private final long[] table;
+    private final int mask;
+    private final int sampleSize;
+    private int additions;
+
+    FrequencySketch(int maximumSize) {
+        int size = OpenHashMap.tableSizeFor(Math.max(8, maximumSize));
+        table = new long[size];
+        mask = size - 1;
+        sampleSize = (int) Math.min(10L * Math.max(1, maximumSize), Integer.MAX_VALUE);
+    }
+
+    int frequency(Object key) {
+        int hash = OpenHashMap.spread(key.hashCode());
+        int frequency = Integer.MAX_VALUE;
+        for (int row = 0; row < 4; row++) {
+            int h = rehash(hash, row);
+            long word = table[h & mask];
+            frequency = Math.min(frequency, (int) ((word >>> offset(h)) & 0xF));
+        }
+        return frequency;
+    }
+
+    void increment(Object key) {
+        int hash = OpenHashMap.spread(key.hashCode());
+        boolean added = false;
+        for (int row = 0; row < 4; row++) {
+            int h = rehash(hash, row);
+            int index = h & mask;
+            int offset = offset(h);
+            if (((table[index] >>> offset) & 0xF) != 0xF) {
+                table[index] += 1L << offset;
+                added = true;
+            }
+        }
+        if (added && ++additions == sampleSize) {
+            reset();
+        }
+    }
+
+    // Halves every counter at once with a shift and a mask per word
+    private void reset() {
+        for (int i = 0; i < table.length; i++) {
+            table[i] = (table[i] >>> 1) & RESET_MASK;
+        }
+        additions /= 2;
+    }
+
+    private static int rehash(int hash, int row) {
+        int h = (hash + SEEDS[row]) * SEEDS[row];
+        return h ^ (h >>> 17);
+    }
+
+    // The counter within the word comes from the high bits, which the index does not use
+    private static int offset(int h) {
+        return (h >>> 28) << 2;
+    }
+}
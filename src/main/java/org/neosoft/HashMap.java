@@ -1,26 +1,67 @@
 package org.neosoft;
 
-import java.util.ArrayList;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.AbstractCollection;
+import java.util.AbstractSet;
 import java.util.Collection;
-import java.util.HashSet;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Objects;
 import java.util.Set;
+import java.util.Spliterator;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.BinaryOperator;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.StreamSupport;
 
 public class HashMap<K, V> implements Map<K, V> {
     private static final int DEFAULT_CAPACITY = 16;
     private static final float DEFAULT_LOAD_FACTOR = 0.75f;
+    // Number of old buckets moved per operation while an incremental resize is running.
+    // Must be at least 2 so a migration always finishes before the next resize is due.
+    private static final int MIGRATION_STEP = 4;
+    // Chain length at which a bucket is turned into a tree, and the size at which a split
+    // tree goes back to a chain. Trees are only built once the table has MIN_TREEIFY_CAPACITY buckets.
+    private static final int TREEIFY_THRESHOLD = 8;
+    private static final int UNTREEIFY_THRESHOLD = 6;
+    private static final int MIN_TREEIFY_CAPACITY = 64;
 
     private Entry<K, V>[] table;
     private int size;
     private int capacity;
     private float loadFactor;
 
+    // Incremental resize: while oldTable is non-null, buckets below migrateIndex
+    // have already been moved into table and the rest still live in oldTable
+    private final boolean incrementalResize;
+    private Entry<K, V>[] oldTable;
+    private int migrateIndex;
+
+    // Structural modification count, used by the view iterators to fail fast
+    private int modCount;
+
+    private Set<K> keySet;
+    private Collection<V> values;
+    private Set<Map.Entry<K, V>> entrySet;
+
+    // Resize counters, null unless enableStats() was called
+    private HashTableStats.Recorder stats;
+
     // Inner class to represent the key-value pairs in the map
     private static class Entry<K, V> implements Map.Entry<K, V> {
+        // Spread hash of the key, cached so that lookups can skip equals() on a mismatch
+        // and a resize never has to call hashCode() again
+        final int hash;
         K key;
         V value;
         Entry<K, V> next;
 
-        Entry(K key, V value, Entry<K, V> next) {
+        Entry(int hash, K key, V value, Entry<K, V> next) {
+            this.hash = hash;
             this.key = key;
             this.value = value;
             this.next = next;
@@ -42,6 +83,77 @@ public class HashMap<K, V> implements Map<K, V> {
             this.value = value;
             return oldValue;
         }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Map.Entry)) {
+                return false;
+            }
+            Map.Entry<?, ?> e = (Map.Entry<?, ?>) o;
+            return Objects.equals(key, e.getKey()) && Objects.equals(value, e.getValue());
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hashCode(key) ^ Objects.hashCode(value);
+        }
+    }
+
+    // Entry of a treeified bucket: red-black tree links plus a back link for the chain
+    private static final class TreeNode<K, V> extends Entry<K, V> {
+        TreeNode<K, V> parent;
+        TreeNode<K, V> left;
+        TreeNode<K, V> right;
+        TreeNode<K, V> prev;
+        boolean red;
+
+        TreeNode(int hash, K key, V value) {
+            super(hash, key, value, null);
+        }
+
+        void reset() {
+            parent = left = right = prev = null;
+            red = false;
+        }
+
+        TreeNode<K, V> root() {
+            TreeNode<K, V> r = this;
+            while (r.parent != null) {
+                r = r.parent;
+            }
+            return r;
+        }
+
+        // Finds the node for the key starting at this node. Where the order cannot tell
+        // which side the key is on, both subtrees are searched.
+        TreeNode<K, V> find(int h, Object k, Class<?> kc) {
+            TreeNode<K, V> p = this;
+            do {
+                int dir;
+                TreeNode<K, V> pl = p.left;
+                TreeNode<K, V> pr = p.right;
+                TreeNode<K, V> q;
+                if (p.hash > h) {
+                    p = pl;
+                } else if (p.hash < h) {
+                    p = pr;
+                } else if (keyEquals(k, p.key)) {
+                    return p;
+                } else if (pl == null) {
+                    p = pr;
+                } else if (pr == null) {
+                    p = pl;
+                } else if ((kc != null || (kc = comparableClassFor(k)) != null)
+                        && (dir = compareComparables(kc, k, p.key)) != 0) {
+                    p = (dir < 0) ? pl : pr;
+                } else if ((q = pr.find(h, k, kc)) != null) {
+                    return q;
+                } else {
+                    p = pl;
+                }
+            } while (p != null);
+            return null;
+        }
     }
 
     public HashMap() {
@@ -53,14 +165,22 @@ public class HashMap<K, V> implements Map<K, V> {
     }
 
     public HashMap(int initialCapacity, float loadFactor) {
+        this(initialCapacity, loadFactor, false);
+    }
+
+    // With incrementalResize the table is doubled without rehashing it in one go:
+    // each later put, get, remove or containsKey moves a few buckets across instead
+    public HashMap(int initialCapacity, float loadFactor, boolean incrementalResize) {
         if (initialCapacity <= 0) {
             throw new IllegalArgumentException("Invalid initial capacity: " + initialCapacity);
         }
         if (loadFactor <= 0 || Float.isNaN(loadFactor)) {
             throw new IllegalArgumentException("Invalid load factor: " + loadFactor);
         }
-        this.capacity = initialCapacity;
+        // The table size is kept a power of two so that an index is a mask of the hash
+        this.capacity = OpenHashMap.tableSizeFor(initialCapacity);
         this.loadFactor = loadFactor;
+        this.incrementalResize = incrementalResize;
         this.table = new Entry[capacity];
     }
 
@@ -76,31 +196,178 @@ public class HashMap<K, V> implements Map<K, V> {
 
     @Override
     public V put(K key, V value) {
+        migrate();
         int hash = hash(key);
-        int index = getIndex(hash);
 
-        Entry<K, V> entry = table[index];
-        while (entry != null) {
-            if (entry.key.equals(key)) {
-                V oldValue = entry.value;
-                entry.value = value;
-                return oldValue;
-            }
-            entry = entry.next;
+        Entry<K, V> entry = findEntry(hash, key);
+        if (entry != null) {
+            V oldValue = entry.value;
+            entry.value = value;
+            return oldValue;
         }
 
+        addEntry(hash, key, value);
+        return null; // Indicating no previous value for the given key
+    }
 
-        // Key not found, create a new entry and add it to the linked list
-        Entry<K, V> newEntry = new Entry<>(key, value, table[index]);
-        table[index] = newEntry;
+    // Adds a mapping for a key that findEntry has just reported absent
+    private void addEntry(int hash, K key, V value) {
+        int index = getIndex(hash);
+        Entry<K, V> newEntry = (table[index] instanceof TreeNode)
+                ? new TreeNode<>(hash, key, value)
+                : new Entry<>(hash, key, value, null);
+        int binCount = linkEntry(table, index, newEntry);
         size++;
+        modCount++;
 
         // Check if resizing is needed
         if (size > loadFactor * capacity) {
             resize();
+        } else if (binCount >= TREEIFY_THRESHOLD) {
+            // In a small table a long chain is more likely bad luck than a bad hashCode(),
+            // so spread it out by growing the table before paying for a tree
+            if (capacity < MIN_TREEIFY_CAPACITY && oldTable == null) {
+                resize();
+            } else {
+                treeifyBin(table, index);
+            }
         }
+    }
 
-        return null; // Indicating no previous value for the given key
+    // *** Compound operations: one hash and one lookup, then the update happens in place ***
+
+    @Override
+    public V getOrDefault(K key, V defaultValue) {
+        migrate();
+        Entry<K, V> entry = findEntry(hash(key), key);
+        return (entry != null) ? entry.value : defaultValue;
+    }
+
+    @Override
+    public V putIfAbsent(K key, V value) {
+        migrate();
+        int hash = hash(key);
+        Entry<K, V> entry = findEntry(hash, key);
+        if (entry != null) {
+            if (entry.value == null) {
+                entry.value = value;
+                return null;
+            }
+            return entry.value;
+        }
+        addEntry(hash, key, value);
+        return null;
+    }
+
+    @Override
+    public V computeIfAbsent(K key, Function<? super K, ? extends V> mappingFunction) {
+        Objects.requireNonNull(mappingFunction);
+        migrate();
+        int hash = hash(key);
+        Entry<K, V> entry = findEntry(hash, key);
+        if (entry != null && entry.value != null) {
+            return entry.value;
+        }
+
+        int expectedModCount = modCount;
+        V value = mappingFunction.apply(key);
+        if (modCount != expectedModCount) {
+            throw new ConcurrentModificationException(); // The function modified this map
+        }
+        if (value == null) {
+            return null;
+        }
+        if (entry != null) {
+            entry.value = value;
+        } else {
+            addEntry(hash, key, value);
+        }
+        return value;
+    }
+
+    @Override
+    public V compute(K key, BiFunction<? super K, ? super V, ? extends V> remappingFunction) {
+        Objects.requireNonNull(remappingFunction);
+        migrate();
+        int hash = hash(key);
+        Entry<K, V> entry = findEntry(hash, key);
+        V oldValue = (entry != null) ? entry.value : null;
+
+        int expectedModCount = modCount;
+        V value = remappingFunction.apply(key, oldValue);
+        if (modCount != expectedModCount) {
+            throw new ConcurrentModificationException();
+        }
+        if (entry != null) {
+            if (value != null) {
+                entry.value = value;
+            } else {
+                removeMapping(hash, key);
+            }
+        } else if (value != null) {
+            addEntry(hash, key, value);
+        }
+        return value;
+    }
+
+    @Override
+    public V merge(K key, V value, BiFunction<? super V, ? super V, ? extends V> remappingFunction) {
+        Objects.requireNonNull(value);
+        Objects.requireNonNull(remappingFunction);
+        migrate();
+        int hash = hash(key);
+        Entry<K, V> entry = findEntry(hash, key);
+        if (entry == null) {
+            addEntry(hash, key, value);
+            return value;
+        }
+        if (entry.value == null) {
+            entry.value = value;
+            return value;
+        }
+
+        int expectedModCount = modCount;
+        V merged = remappingFunction.apply(entry.value, value);
+        if (modCount != expectedModCount) {
+            throw new ConcurrentModificationException();
+        }
+        if (merged != null) {
+            entry.value = merged;
+        } else {
+            removeMapping(hash, key);
+        }
+        return merged;
+    }
+
+    // Grows the table once to fit all new mappings instead of doubling repeatedly
+    @Override
+    public void putAll(Map<? extends K, ? extends V> m) {
+        int needed = size + m.size();
+        if (needed > loadFactor * capacity) {
+            int newCapacity = capacity;
+            while (needed > loadFactor * newCapacity && newCapacity <= Integer.MAX_VALUE / 2) {
+                newCapacity *= 2;
+            }
+            resize(newCapacity);
+        }
+        for (Map.Entry<? extends K, ? extends V> e : m.entrySet()) {
+            put(e.getKey(), e.getValue());
+        }
+    }
+
+    @Override
+    public void forEach(BiConsumer<? super K, ? super V> action) {
+        Objects.requireNonNull(action);
+        finishMigration();
+        int expectedModCount = modCount;
+        for (Entry<K, V> entry : table) {
+            for (; entry != null; entry = entry.next) {
+                action.accept(entry.key, entry.value);
+            }
+        }
+        if (modCount != expectedModCount) {
+            throw new ConcurrentModificationException();
+        }
     }
 
     private int hash(K key) {
@@ -109,77 +376,233 @@ public class HashMap<K, V> implements Map<K, V> {
         }
         // If the key's hashCode() method is overridden, use it.
         // Otherwise, use the default implementation from Object class.
-        return key.hashCode();
+        // The high bits are folded in because the index only uses the low ones.
+        int h = key.hashCode();
+        return h ^ (h >>> 16);
+    }
+
+    private static boolean keyEquals(Object key, Object other) {
+        return key == other || (key != null && key.equals(other));
     }
 
     private int getIndex(int hash) {
-        // Take the absolute value of the hash code to handle negative hash codes
-        // Modulo operation to map the hash code to a valid index in the array
-        return Math.abs(hash) % capacity;
+        // The capacity is a power of two, so masking maps any hash to a valid index
+        return hash & (capacity - 1);
     }
 
     private void resize() {
-        int newCapacity = capacity * 2; // Double the current capacity
-        Entry<K, V>[] newTable = new Entry[newCapacity];
+        resize(capacity * 2); // Double the current capacity
+    }
 
-        // Rehash the entries and store them in the new hash table array
-        for (Entry<K, V> entry : table) {
+    private void resize(int newCapacity) {
+        HashTableStats.Recorder recorder = stats;
+        long start = (recorder != null) ? System.nanoTime() : 0;
+        int oldCapacity = capacity;
+
+        // A previous incremental resize must be complete before the table can grow again
+        finishMigration();
+
+        oldTable = table;
+        migrateIndex = 0;
+        table = new Entry[newCapacity];
+        capacity = newCapacity;
+
+        // In incremental mode the following operations drain the old table,
+        // otherwise every bucket is moved right away
+        if (!incrementalResize) {
+            finishMigration();
+        }
+
+        // In incremental mode this only times the allocation, the migration is spread out
+        if (recorder != null) {
+            recorder.resized(this, oldCapacity, newCapacity, size, System.nanoTime() - start);
+        }
+    }
+
+    // Moves the next MIGRATION_STEP buckets of the old table into the current one
+    private void migrate() {
+        Entry<K, V>[] old = oldTable;
+        if (old == null) {
+            return;
+        }
+        int end = Math.min(migrateIndex + MIGRATION_STEP, old.length);
+        for (int i = migrateIndex; i < end; i++) {
+            transferBucket(old, i);
+        }
+        migrateIndex = end;
+        if (end == old.length) {
+            oldTable = null;
+        }
+    }
+
+    private void finishMigration() {
+        Entry<K, V>[] old = oldTable;
+        if (old == null) {
+            return;
+        }
+        for (int i = migrateIndex; i < old.length; i++) {
+            transferBucket(old, i);
+        }
+        oldTable = null;
+    }
+
+    private void transferBucket(Entry<K, V>[] old, int i) {
+        Entry<K, V> entry = old[i];
+        old[i] = null;
+        if (entry == null) {
+            return;
+        }
+        if (capacity != old.length * 2) {
+            // Grown by more than one doubling (putAll): place each entry by its cached hash
             while (entry != null) {
-                int newIndex = getIndex(hash(entry.key), newCapacity);
                 Entry<K, V> nextEntry = entry.next;
-                entry.next = newTable[newIndex];
-                newTable[newIndex] = entry;
+                int newIndex = getIndex(entry.hash);
+                if (linkEntry(table, newIndex, entry) >= TREEIFY_THRESHOLD) {
+                    treeifyBin(table, newIndex);
+                }
                 entry = nextEntry;
             }
+            return;
         }
 
-        // Update the hash table and capacity
-        table = newTable;
-        capacity = newCapacity;
+        // Doubling: the cached hash bit for old.length decides whether an entry stays at i or
+        // moves to i + old.length, so the chain is split in order without rehashing any key
+        int bit = old.length;
+        Entry<K, V> loHead = null, loTail = null, hiHead = null, hiTail = null;
+        int loCount = 0, hiCount = 0;
+        for (Entry<K, V> e = entry, next; e != null; e = next) {
+            next = e.next;
+            e.next = null;
+            if ((e.hash & bit) == 0) {
+                if (loTail == null) {
+                    loHead = e;
+                } else {
+                    loTail.next = e;
+                }
+                loTail = e;
+                loCount++;
+            } else {
+                if (hiTail == null) {
+                    hiHead = e;
+                } else {
+                    hiTail.next = e;
+                }
+                hiTail = e;
+                hiCount++;
+            }
+        }
+        boolean fromTree = entry instanceof TreeNode;
+        placeSplit(i, loHead, loCount, fromTree);
+        placeSplit(i + bit, hiHead, hiCount, fromTree);
     }
 
-    private int getIndex(int hash, int newCapacity) {
-        return Math.abs(hash) % newCapacity;
+    // Adds an entry that is known to be absent to the bucket. Returns the chain length
+    // for a list bucket so the caller can decide to treeify, or 0 for a tree bucket.
+    private int linkEntry(Entry<K, V>[] tab, int index, Entry<K, V> entry) {
+        Entry<K, V> first = tab[index];
+        if (first instanceof TreeNode) {
+            TreeNode<K, V> node = (entry instanceof TreeNode)
+                    ? (TreeNode<K, V>) entry
+                    : new TreeNode<>(entry.hash, entry.key, entry.value);
+            insertTreeNode(tab, index, node);
+            return 0;
+        }
+
+        if (entry instanceof TreeNode) {
+            entry = new Entry<>(entry.hash, entry.key, entry.value, null);
+        }
+        entry.next = first;
+        tab[index] = entry;
+
+        int binCount = 0;
+        for (Entry<K, V> e = entry; e != null && binCount < TREEIFY_THRESHOLD; e = e.next) {
+            binCount++;
+        }
+        return binCount;
     }
 
-    @Override
-    public V get(K key) {
-        int hash = hash(key);
-        int index = getIndex(hash);
+    // Looks the key up in the current table and, during a migration, in the old bucket
+    // it would still occupy if that bucket has not been moved yet
+    private Entry<K, V> findEntry(int hash, K key) {
+        Entry<K, V> entry = findInBucket(table[getIndex(hash)], hash, key);
+        if (entry == null && oldTable != null) {
+            int oldIndex = getIndex(hash, oldTable.length);
+            if (oldIndex >= migrateIndex) {
+                entry = findInBucket(oldTable[oldIndex], hash, key);
+            }
+        }
+        return entry;
+    }
 
-        Entry<K, V> entry = table[index];
-        while (entry != null) {
-            if (entry.key.equals(key)) {
-                return entry.value;
+    private Entry<K, V> findInBucket(Entry<K, V> first, int hash, K key) {
+        if (first instanceof TreeNode) {
+            return ((TreeNode<K, V>) first).root().find(hash, key, null);
+        }
+        for (Entry<K, V> entry = first; entry != null; entry = entry.next) {
+            if (entry.hash == hash && keyEquals(key, entry.key)) {
+                return entry;
             }
-            entry = entry.next;
         }
+        return null;
+    }
+
+    private int getIndex(int hash, int newCapacity) {
+        return hash & (newCapacity - 1);
+    }
 
-        return null; // Key not found
+    @Override
+    public V get(K key) {
+        migrate();
+        Entry<K, V> entry = findEntry(hash(key), key);
+        return (entry != null) ? entry.value : null; // null if key not found
     }
 
     @Override
     public V remove(K key) {
-        int hash = hash(key);
-        int index = getIndex(hash);
+        migrate();
+        Entry<K, V> removed = removeMapping(hash(key), key);
+        return (removed != null) ? removed.value : null;
+    }
+
+    private Entry<K, V> removeMapping(int hash, K key) {
+        Entry<K, V> removed = removeFromBucket(table, getIndex(hash), hash, key, true);
+        if (removed == null && oldTable != null) {
+            int oldIndex = getIndex(hash, oldTable.length);
+            if (oldIndex >= migrateIndex) {
+                removed = removeFromBucket(oldTable, oldIndex, hash, key, true);
+            }
+        }
+        return removed;
+    }
+
+    private Entry<K, V> removeFromBucket(Entry<K, V>[] tab, int index, int hash, K key, boolean movable) {
+        Entry<K, V> first = tab[index];
+        if (first instanceof TreeNode) {
+            TreeNode<K, V> node = ((TreeNode<K, V>) first).root().find(hash, key, null);
+            if (node != null) {
+                removeTreeNode(tab, index, node, movable);
+                size--;
+                modCount++;
+            }
+            return node;
+        }
 
         Entry<K, V> prevEntry = null;
-        Entry<K, V> current = table[index];
+        Entry<K, V> current = first;
 
         // Search for the key in the linked list at the specific index
         while (current != null) {
-            if (current.key.equals(key)) {
-                V removedValue = current.value;
-
+            if (current.hash == hash && keyEquals(key, current.key)) {
                 // Remove the entry from the linked list
                 if (prevEntry == null) {
-                    table[index] = current.next;
+                    tab[index] = current.next;
                 } else {
                     prevEntry.next = current.next;
                 }
 
                 size--;
-                return removedValue;
+                modCount++;
+                return current;
             }
             prevEntry = current;
             current = current.next;
@@ -191,23 +614,421 @@ public class HashMap<K, V> implements Map<K, V> {
 
     @Override
     public boolean containsKey(K key) {
-        int hash = hash(key);
-        int index = getIndex(hash);
+        migrate();
+        return findEntry(hash(key), key) != null;
+    }
 
-        Entry<K, V> current = table[index];
+    // *** Tree bins ***
+    //
+    // A bucket whose chain grows past TREEIFY_THRESHOLD is turned into a red-black tree of
+    // TreeNodes ordered by hash, then by compareTo() when the keys are mutually Comparable,
+    // then by a stable tie-break. The nodes stay linked through next as well, with the root
+    // kept at the front, so code that only walks the chain works on either kind of bucket.
 
-        // Search for the key in the linked list at the specific index
-        while (current != null) {
-            if (current.key.equals(key)) {
-                return true; // Key found
+    private void treeifyBin(Entry<K, V>[] tab, int index) {
+        Entry<K, V> first = tab[index];
+        if (first == null || first instanceof TreeNode) {
+            return;
+        }
+        tab[index] = null;
+        for (Entry<K, V> e = first; e != null; e = e.next) {
+            TreeNode<K, V> node = new TreeNode<>(e.hash, e.key, e.value);
+            if (tab[index] == null) {
+                node.red = false;
+                tab[index] = node;
+            } else {
+                insertTreeNode(tab, index, node);
             }
-            current = current.next;
         }
+    }
 
-        // Key not found
-        return false;
+    // Replaces the tree nodes in the chain starting at first with plain entries
+    private Entry<K, V> untreeify(Entry<K, V> first) {
+        Entry<K, V> head = null;
+        Entry<K, V> tail = null;
+        for (Entry<K, V> e = first; e != null; e = e.next) {
+            Entry<K, V> plain = new Entry<>(e.hash, e.key, e.value, null);
+            if (tail == null) {
+                head = plain;
+            } else {
+                tail.next = plain;
+            }
+            tail = plain;
+        }
+        return head;
+    }
+
+    // Installs one half of a split bucket. A half of a tree bin becomes a plain chain again
+    // when it is short, otherwise a tree is rebuilt from the same nodes.
+    private void placeSplit(int index, Entry<K, V> head, int count, boolean fromTree) {
+        if (head == null) {
+            return;
+        }
+        if (table[index] != null) {
+            // Only happens during an incremental resize, where new keys may already
+            // have been put into the target bucket: merge entry by entry
+            for (Entry<K, V> e = head, next; e != null; e = next) {
+                next = e.next;
+                if (linkEntry(table, index, e) >= TREEIFY_THRESHOLD) {
+                    treeifyBin(table, index);
+                }
+            }
+        } else if (!fromTree) {
+            table[index] = head;
+            if (count >= TREEIFY_THRESHOLD) {
+                treeifyBin(table, index);
+            }
+        } else if (count <= UNTREEIFY_THRESHOLD) {
+            table[index] = untreeify(head);
+        } else {
+            for (TreeNode<K, V> e = (TreeNode<K, V>) head, next; e != null; e = next) {
+                next = (TreeNode<K, V>) e.next;
+                e.reset();
+                e.next = null;
+                if (table[index] == null) {
+                    e.red = false;
+                    table[index] = e;
+                } else {
+                    insertTreeNode(table, index, e);
+                }
+            }
+        }
+    }
+
+    // Inserts a detached node whose key is known to be absent from the tree bin at index
+    private void insertTreeNode(Entry<K, V>[] tab, int index, TreeNode<K, V> node) {
+        TreeNode<K, V> root = ((TreeNode<K, V>) tab[index]).root();
+        node.reset();
+        int h = node.hash;
+        K k = node.key;
+        Class<?> kc = null;
+        TreeNode<K, V> p = root;
+        for (;;) {
+            int dir;
+            if (p.hash > h) {
+                dir = -1;
+            } else if (p.hash < h) {
+                dir = 1;
+            } else if ((kc != null || (kc = comparableClassFor(k)) != null)
+                    && (dir = compareComparables(kc, k, p.key)) != 0) {
+                // ordered by compareTo()
+            } else {
+                dir = tieBreakOrder(k, p.key);
+            }
+
+            TreeNode<K, V> child = (dir <= 0) ? p.left : p.right;
+            if (child == null) {
+                node.parent = p;
+                if (dir <= 0) {
+                    p.left = node;
+                } else {
+                    p.right = node;
+                }
+                break;
+            }
+            p = child;
+        }
+
+        // Link the node into the chain right after the root
+        node.next = root.next;
+        node.prev = root;
+        if (root.next != null) {
+            ((TreeNode<K, V>) root.next).prev = node;
+        }
+        root.next = node;
+
+        moveRootToFront(tab, index, balanceInsertion(root, node));
+    }
+
+    // With movable false (iterator removal) the chain is never reordered or rebuilt, so the
+    // root may end up behind the first node until the next regular update of the bin
+    private void removeTreeNode(Entry<K, V>[] tab, int index, TreeNode<K, V> z, boolean movable) {
+        // Unlink from the chain first
+        TreeNode<K, V> next = (TreeNode<K, V>) z.next;
+        TreeNode<K, V> prev = z.prev;
+        if (prev == null) {
+            tab[index] = next;
+        } else {
+            prev.next = next;
+        }
+        if (next != null) {
+            next.prev = prev;
+        }
+        if (next == null && prev == null) {
+            return; // Bin is now empty
+        }
+
+        TreeNode<K, V> root = z.root();
+        TreeNode<K, V> x;
+        TreeNode<K, V> xParent;
+        boolean removedRed = z.red;
+        if (z.left == null) {
+            x = z.right;
+            xParent = z.parent;
+            root = transplant(root, z, z.right);
+        } else if (z.right == null) {
+            x = z.left;
+            xParent = z.parent;
+            root = transplant(root, z, z.left);
+        } else {
+            // Relink the in-order successor into z's position rather than copying its key,
+            // so that entries handed out to callers keep their identity
+            TreeNode<K, V> y = z.right;
+            while (y.left != null) {
+                y = y.left;
+            }
+            removedRed = y.red;
+            x = y.right;
+            if (y.parent == z) {
+                xParent = y;
+            } else {
+                xParent = y.parent;
+                root = transplant(root, y, y.right);
+                y.right = z.right;
+                y.right.parent = y;
+            }
+            root = transplant(root, z, y);
+            y.left = z.left;
+            y.left.parent = y;
+            y.red = z.red;
+        }
+        if (!removedRed) {
+            root = balanceDeletion(root, x, xParent);
+        }
+        z.reset();
+        if (!movable) {
+            return;
+        }
+
+        // A tree this shallow holds only a handful of nodes, go back to a plain chain
+        TreeNode<K, V> rl;
+        if (root.right == null || (rl = root.left) == null || rl.left == null) {
+            tab[index] = untreeify(tab[index]);
+        } else {
+            moveRootToFront(tab, index, root);
+        }
+    }
+
+    private void moveRootToFront(Entry<K, V>[] tab, int index, TreeNode<K, V> root) {
+        TreeNode<K, V> first = (TreeNode<K, V>) tab[index];
+        if (root != first) {
+            TreeNode<K, V> rn = (TreeNode<K, V>) root.next;
+            TreeNode<K, V> rp = root.prev;
+            if (rn != null) {
+                rn.prev = rp;
+            }
+            if (rp != null) {
+                rp.next = rn;
+            }
+            first.prev = root;
+            root.next = first;
+            root.prev = null;
+            tab[index] = root;
+        }
+    }
+
+    private static <K, V> TreeNode<K, V> transplant(TreeNode<K, V> root, TreeNode<K, V> u, TreeNode<K, V> v) {
+        if (u.parent == null) {
+            root = v;
+        } else if (u == u.parent.left) {
+            u.parent.left = v;
+        } else {
+            u.parent.right = v;
+        }
+        if (v != null) {
+            v.parent = u.parent;
+        }
+        return root;
+    }
+
+    private static <K, V> TreeNode<K, V> rotateLeft(TreeNode<K, V> root, TreeNode<K, V> x) {
+        TreeNode<K, V> y = x.right;
+        x.right = y.left;
+        if (y.left != null) {
+            y.left.parent = x;
+        }
+        y.parent = x.parent;
+        if (x.parent == null) {
+            root = y;
+        } else if (x == x.parent.left) {
+            x.parent.left = y;
+        } else {
+            x.parent.right = y;
+        }
+        y.left = x;
+        x.parent = y;
+        return root;
+    }
+
+    private static <K, V> TreeNode<K, V> rotateRight(TreeNode<K, V> root, TreeNode<K, V> x) {
+        TreeNode<K, V> y = x.left;
+        x.left = y.right;
+        if (y.right != null) {
+            y.right.parent = x;
+        }
+        y.parent = x.parent;
+        if (x.parent == null) {
+            root = y;
+        } else if (x == x.parent.right) {
+            x.parent.right = y;
+        } else {
+            x.parent.left = y;
+        }
+        y.right = x;
+        x.parent = y;
+        return root;
+    }
+
+    private static <K, V> TreeNode<K, V> balanceInsertion(TreeNode<K, V> root, TreeNode<K, V> z) {
+        z.red = true;
+        while (z.parent != null && z.parent.red) {
+            TreeNode<K, V> p = z.parent;
+            TreeNode<K, V> g = p.parent; // Never null, a red node is not the root
+            if (p == g.left) {
+                TreeNode<K, V> u = g.right;
+                if (u != null && u.red) {
+                    p.red = false;
+                    u.red = false;
+                    g.red = true;
+                    z = g;
+                } else {
+                    if (z == p.right) {
+                        z = p;
+                        root = rotateLeft(root, z);
+                        p = z.parent;
+                    }
+                    p.red = false;
+                    g.red = true;
+                    root = rotateRight(root, g);
+                }
+            } else {
+                TreeNode<K, V> u = g.left;
+                if (u != null && u.red) {
+                    p.red = false;
+                    u.red = false;
+                    g.red = true;
+                    z = g;
+                } else {
+                    if (z == p.left) {
+                        z = p;
+                        root = rotateRight(root, z);
+                        p = z.parent;
+                    }
+                    p.red = false;
+                    g.red = true;
+                    root = rotateLeft(root, g);
+                }
+            }
+        }
+        root.red = false;
+        return root;
+    }
+
+    private static <K, V> TreeNode<K, V> balanceDeletion(TreeNode<K, V> root, TreeNode<K, V> x, TreeNode<K, V> xp) {
+        while (x != root && (x == null || !x.red)) {
+            if (x == xp.left) {
+                TreeNode<K, V> w = xp.right;
+                if (w.red) {
+                    w.red = false;
+                    xp.red = true;
+                    root = rotateLeft(root, xp);
+                    w = xp.right;
+                }
+                if (!isRed(w.left) && !isRed(w.right)) {
+                    w.red = true;
+                    x = xp;
+                    xp = x.parent;
+                } else {
+                    if (!isRed(w.right)) {
+                        w.left.red = false;
+                        w.red = true;
+                        root = rotateRight(root, w);
+                        w = xp.right;
+                    }
+                    w.red = xp.red;
+                    xp.red = false;
+                    if (w.right != null) {
+                        w.right.red = false;
+                    }
+                    root = rotateLeft(root, xp);
+                    x = root;
+                }
+            } else {
+                TreeNode<K, V> w = xp.left;
+                if (w.red) {
+                    w.red = false;
+                    xp.red = true;
+                    root = rotateRight(root, xp);
+                    w = xp.left;
+                }
+                if (!isRed(w.left) && !isRed(w.right)) {
+                    w.red = true;
+                    x = xp;
+                    xp = x.parent;
+                } else {
+                    if (!isRed(w.left)) {
+                        w.right.red = false;
+                        w.red = true;
+                        root = rotateLeft(root, w);
+                        w = xp.left;
+                    }
+                    w.red = xp.red;
+                    xp.red = false;
+                    if (w.left != null) {
+                        w.left.red = false;
+                    }
+                    root = rotateRight(root, xp);
+                    x = root;
+                }
+            }
+        }
+        if (x != null) {
+            x.red = false;
+        }
+        return root;
+    }
+
+    private static boolean isRed(TreeNode<?, ?> node) {
+        return node != null && node.red;
+    }
+
+    // Returns the key's class if it is of the form "class C implements Comparable<C>", else null
+    static Class<?> comparableClassFor(Object x) {
+        if (x instanceof Comparable) {
+            Class<?> c = x.getClass();
+            if (c == String.class) {
+                return c;
+            }
+            for (Type t : c.getGenericInterfaces()) {
+                if (t instanceof ParameterizedType) {
+                    ParameterizedType p = (ParameterizedType) t;
+                    Type[] as = p.getActualTypeArguments();
+                    if (p.getRawType() == Comparable.class && as.length == 1 && as[0] == c) {
+                        return c;
+                    }
+                }
+            }
+        }
+        return null;
     }
 
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    static int compareComparables(Class<?> kc, Object k, Object x) {
+        return (x == null || x.getClass() != kc) ? 0 : ((Comparable) k).compareTo(x);
+    }
+
+    // Orders keys that have equal hashes and are not comparable. The order only has to be
+    // consistent for insertion; lookups of such keys search both subtrees.
+    static int tieBreakOrder(Object a, Object b) {
+        int d = 0;
+        if (a != null && b != null) {
+            d = a.getClass().getName().compareTo(b.getClass().getName());
+        }
+        if (d == 0) {
+            d = (System.identityHashCode(a) <= System.identityHashCode(b)) ? -1 : 1;
+        }
+        return d;
+    }
 
     @Override
     public void clear() {
@@ -215,62 +1036,387 @@ public class HashMap<K, V> implements Map<K, V> {
         for (int i = 0; i < capacity; i++) {
             table[i] = null;
         }
+        oldTable = null; // Abandon any migration in progress
         size = 0; // Reset the size to zero
+        modCount++;
     }
 
-    @Override
-    public Set<K> keySet() {
-        Set<K> keys = new HashSet<>();
+    // Starts counting resizes, reporting each one to the listener if it is non-null
+    public void enableStats(HashTableStats.Listener listener) {
+        stats = new HashTableStats.Recorder(listener);
+    }
 
-        // Traverse each bucket in the hash table
-        for (Entry<K, V> entry : table) {
-            // Traverse the linked list in the current bucket
-            while (entry != null) {
-                // Add the key to the set
-                keys.add(entry.key);
-                entry = entry.next;
+    public void disableStats() {
+        stats = null;
+    }
+
+    // Scans the table, O(capacity). Entries still waiting in the old table of an incremental
+    // resize are counted in the size and memory estimate but not in the histogram.
+    public HashTableStats stats() {
+        HashTableStats.Builder builder = new HashTableStats.Builder();
+        int treeNodes = 0;
+        for (Entry<K, V> head : table) {
+            int length = 0;
+            for (Entry<K, V> e = head; e != null; e = e.next) {
+                length++;
             }
+            if (head instanceof TreeNode) {
+                builder.treeBins++;
+                treeNodes += length;
+            }
+            builder.bucket(length);
+        }
+
+        long bytes = HashTableStats.arrayBytes(table.length)
+                + (size - treeNodes) * HashTableStats.align(HashTableStats.OBJECT_HEADER + 4 + 3 * HashTableStats.REFERENCE_SIZE)
+                + treeNodes * HashTableStats.align(HashTableStats.OBJECT_HEADER + 4 + 7 * HashTableStats.REFERENCE_SIZE + 1);
+        if (oldTable != null) {
+            bytes += HashTableStats.arrayBytes(oldTable.length);
         }
+        return new HashTableStats(capacity, size, builder.occupiedBuckets, builder.chainLengths,
+                builder.maxChainLength, builder.treeBins, stats, bytes);
+    }
 
-        return keys;
+    // The views are created once and read the table directly, so iterating them
+    // allocates nothing but the iterator
+    @Override
+    public Set<K> keySet() {
+        Set<K> ks = keySet;
+        if (ks == null) {
+            keySet = ks = new KeySet();
+        }
+        return ks;
     }
 
     @Override
     public Collection<V> values() {
-        Collection<V> values = new ArrayList<>();
+        Collection<V> vs = values;
+        if (vs == null) {
+            values = vs = new Values();
+        }
+        return vs;
+    }
 
-        // Traverse each bucket in the hash table
-        for (Entry<K, V> entry : table) {
-            // Traverse the linked list in the current bucket
-            while (entry != null) {
-                // Add the value to the collection
-                values.add(entry.value);
-                entry = entry.next;
+    @Override
+    public Set<Map.Entry<K, V>> entrySet() {
+        Set<Map.Entry<K, V>> es = entrySet;
+        if (es == null) {
+            entrySet = es = new EntrySet();
+        }
+        return es;
+    }
+
+    // *** Parallel traversal ***
+    // The helpers below split the bucket table across the common fork/join pool. The functions
+    // must not modify the map; a concurrent change is reported as ConcurrentModificationException.
+
+    // Performs the action for each mapping, in parallel and in no particular order
+    public void parallelForEach(BiConsumer<? super K, ? super V> action) {
+        Objects.requireNonNull(action);
+        StreamSupport.stream(entrySet().spliterator(), true)
+                .forEach(e -> action.accept(e.getKey(), e.getValue()));
+    }
+
+    // Transforms every mapping and combines the non-null results; null if there are none
+    public <U> U reduce(BiFunction<? super K, ? super V, ? extends U> transformer, BinaryOperator<U> reducer) {
+        Objects.requireNonNull(transformer);
+        Objects.requireNonNull(reducer);
+        return StreamSupport.stream(entrySet().spliterator(), true)
+                .<U>map(e -> transformer.apply(e.getKey(), e.getValue()))
+                .filter(Objects::nonNull)
+                .reduce(reducer)
+                .orElse(null);
+    }
+
+    // Returns a non-null result of the function for some mapping, or null if there is none.
+    // The remaining work is abandoned as soon as any result is found.
+    public <U> U search(BiFunction<? super K, ? super V, ? extends U> searchFunction) {
+        Objects.requireNonNull(searchFunction);
+        return StreamSupport.stream(entrySet().spliterator(), true)
+                .<U>map(e -> searchFunction.apply(e.getKey(), e.getValue()))
+                .filter(Objects::nonNull)
+                .findAny()
+                .orElse(null);
+    }
+
+    // Covers the bucket index range [index, fence). Splitting halves the range, so each half
+    // only has an estimated size; the unsplit spliterator reports the exact size as SIZED.
+    private final class TableSpliterator<T> implements Spliterator<T> {
+        private final Function<Entry<K, V>, T> extractor;
+        private final int extraCharacteristics;
+        private final Entry<K, V>[] tab;
+        private final int expectedModCount;
+        private int index;
+        private final int fence;
+        private long estimate;
+        private boolean exact;
+        private Entry<K, V> current;
+
+        TableSpliterator(Function<Entry<K, V>, T> extractor, int extraCharacteristics) {
+            finishMigration();
+            this.extractor = extractor;
+            this.extraCharacteristics = extraCharacteristics;
+            this.tab = table;
+            this.expectedModCount = modCount;
+            this.index = 0;
+            this.fence = tab.length;
+            this.estimate = size;
+            this.exact = true;
+        }
+
+        private TableSpliterator(TableSpliterator<T> parent, int origin, int fence, long estimate) {
+            this.extractor = parent.extractor;
+            this.extraCharacteristics = parent.extraCharacteristics;
+            this.tab = parent.tab;
+            this.expectedModCount = parent.expectedModCount;
+            this.index = origin;
+            this.fence = fence;
+            this.estimate = estimate;
+            this.exact = false;
+        }
+
+        @Override
+        public Spliterator<T> trySplit() {
+            int lo = index;
+            int mid = (lo + fence) >>> 1;
+            if (lo >= mid || current != null) {
+                return null;
             }
+            index = mid;
+            estimate >>>= 1;
+            exact = false;
+            return new TableSpliterator<>(this, lo, mid, estimate);
         }
 
-        return values;
+        @Override
+        public boolean tryAdvance(Consumer<? super T> action) {
+            Objects.requireNonNull(action);
+            while (current != null || index < fence) {
+                if (current == null) {
+                    current = tab[index++];
+                    continue;
+                }
+                Entry<K, V> e = current;
+                current = e.next;
+                action.accept(extractor.apply(e));
+                if (modCount != expectedModCount) {
+                    throw new ConcurrentModificationException();
+                }
+                return true;
+            }
+            return false;
+        }
+
+        @Override
+        public void forEachRemaining(Consumer<? super T> action) {
+            Objects.requireNonNull(action);
+            Entry<K, V> e = current;
+            current = null;
+            int i = index;
+            index = fence;
+            for (;;) {
+                for (; e != null; e = e.next) {
+                    action.accept(extractor.apply(e));
+                }
+                if (i >= fence) {
+                    break;
+                }
+                e = tab[i++];
+            }
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+        }
+
+        @Override
+        public long estimateSize() {
+            return estimate;
+        }
+
+        @Override
+        public int characteristics() {
+            return (exact ? Spliterator.SIZED : 0) | extraCharacteristics;
+        }
     }
 
-    @Override
-    public Set<Map.Entry<K, V>> entrySet() {
-        Set<Map.Entry<K, V>> entries = new HashSet<>();
+    // Walks the buckets in table order. A pending incremental resize is finished first,
+    // because lookups made while iterating would otherwise move entries under the iterator.
+    private abstract class HashIterator<T> implements Iterator<T> {
+        private Entry<K, V> next;
+        private Entry<K, V> current;
+        private int index;
+        private int expectedModCount;
 
-        // Traverse each bucket in the hash table
-        for (Entry<K, V> entry : table) {
-            // Traverse the linked list in the current bucket
-            while (entry != null) {
-                // Add the entry to the set
-                entries.add(entry);
-                entry = entry.next;
+        HashIterator() {
+            finishMigration();
+            expectedModCount = modCount;
+            advance();
+        }
+
+        private void advance() {
+            Entry<K, V>[] tab = table;
+            while (next == null && index < tab.length) {
+                next = tab[index++];
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        final Entry<K, V> nextEntry() {
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            Entry<K, V> e = next;
+            if (e == null) {
+                throw new NoSuchElementException();
+            }
+            current = e;
+            next = e.next;
+            advance();
+            return e;
+        }
+
+        @Override
+        public void remove() {
+            if (current == null) {
+                throw new IllegalStateException();
+            }
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
             }
+            K key = current.key;
+            int hash = current.hash;
+            // Leave the bin's chain order alone so the entries still ahead are not skipped
+            removeFromBucket(table, getIndex(hash), hash, key, false);
+            current = null;
+            expectedModCount = modCount;
         }
+    }
 
-        return entries;
+    private final class KeyIterator extends HashIterator<K> {
+        @Override
+        public K next() {
+            return nextEntry().key;
+        }
     }
 
-    // Other methods of the Map interface will need to be implemented as well.
-    // For the sake of simplicity, they are omitted in this example.
-}
+    private final class ValueIterator extends HashIterator<V> {
+        @Override
+        public V next() {
+            return nextEntry().value;
+        }
+    }
+
+    private final class EntryIterator extends HashIterator<Map.Entry<K, V>> {
+        @Override
+        public Map.Entry<K, V> next() {
+            return nextEntry();
+        }
+    }
+
+    private final class KeySet extends AbstractSet<K> {
+        @Override
+        public Iterator<K> iterator() {
+            return new KeyIterator();
+        }
 
+        @Override
+        public Spliterator<K> spliterator() {
+            return new TableSpliterator<>(e -> e.key, Spliterator.DISTINCT);
+        }
 
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public boolean contains(Object o) {
+            return containsKey((K) o);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public boolean remove(Object o) {
+            int before = size;
+            HashMap.this.remove((K) o);
+            return size != before;
+        }
+
+        @Override
+        public void clear() {
+            HashMap.this.clear();
+        }
+    }
+
+    private final class Values extends AbstractCollection<V> {
+        @Override
+        public Iterator<V> iterator() {
+            return new ValueIterator();
+        }
+
+        @Override
+        public Spliterator<V> spliterator() {
+            return new TableSpliterator<>(e -> e.value, 0);
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public void clear() {
+            HashMap.this.clear();
+        }
+    }
+
+    private final class EntrySet extends AbstractSet<Map.Entry<K, V>> {
+        @Override
+        public Iterator<Map.Entry<K, V>> iterator() {
+            return new EntryIterator();
+        }
+
+        @Override
+        public Spliterator<Map.Entry<K, V>> spliterator() {
+            return new TableSpliterator<>(e -> e, Spliterator.DISTINCT);
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public boolean contains(Object o) {
+            if (!(o instanceof Map.Entry)) {
+                return false;
+            }
+            Map.Entry<?, ?> e = (Map.Entry<?, ?>) o;
+            K key = (K) e.getKey();
+            migrate();
+            Entry<K, V> candidate = findEntry(hash(key), key);
+            return candidate != null && Objects.equals(candidate.value, e.getValue());
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public boolean remove(Object o) {
+            if (!contains(o)) {
+                return false;
+            }
+            HashMap.this.remove((K) ((Map.Entry<?, ?>) o).getKey());
+            return true;
+        }
+
+        @Override
+        public void clear() {
+            HashMap.this.clear();
+        }
+    }
+}
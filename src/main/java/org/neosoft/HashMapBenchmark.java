@@ -0,0 +1,93 @@
+package org.neosoft;
+
+import java.util.Arrays;
+import java.util.Random;
+
+// Compares the chained HashMap with the open-addressing OpenHashMap, and the
+// worst-case put latency of the stop-the-world and incremental resize modes.
+// Run with: java org.neosoft.HashMapBenchmark [entries] [rounds]
+public class HashMapBenchmark {
+    private static volatile Object sink;
+
+    public static void main(String[] args) {
+        int entries = (args.length > 0) ? Integer.parseInt(args[0]) : 1_000_000;
+        int rounds = (args.length > 1) ? Integer.parseInt(args[1]) : 5;
+
+        Random random = new Random(42);
+        Integer[] present = new Integer[entries];
+        Integer[] absent = new Integer[entries];
+        for (int i = 0; i < entries; i++) {
+            // Even keys go into the map, odd keys are used for misses
+            present[i] = random.nextInt() & ~1;
+            absent[i] = random.nextInt() | 1;
+        }
+
+        // The first rounds only warm up the JIT, the last one is reported
+        for (int round = 1; round <= rounds; round++) {
+            boolean report = round == rounds;
+            run("chained HashMap", new HashMap<Integer, Integer>(), present, absent, report);
+            run("OpenHashMap    ", new OpenHashMap<Integer, Integer>(), present, absent, report);
+        }
+
+        for (int round = 1; round <= rounds; round++) {
+            boolean report = round == rounds;
+            putLatency("full resize    ", new HashMap<Integer, Integer>(16, 0.75f, false), present, report);
+            putLatency("incremental    ", new HashMap<Integer, Integer>(16, 0.75f, true), present, report);
+        }
+    }
+
+    // Times every single put and reports the tail, where a full rehash shows up
+    private static void putLatency(String name, Map<Integer, Integer> map, Integer[] keys, boolean report) {
+        long[] samples = new long[keys.length];
+        for (int i = 0; i < keys.length; i++) {
+            long start = System.nanoTime();
+            map.put(keys[i], keys[i]);
+            samples[i] = System.nanoTime() - start;
+        }
+        Arrays.sort(samples);
+
+        if (report) {
+            System.out.printf("%s put p99 %8.1f us  p99.9 %8.1f us  p99.99 %8.1f us  max %8.1f us%n", name,
+                    samples[(int) (samples.length * 0.99)] / 1e3, samples[(int) (samples.length * 0.999)] / 1e3,
+                    samples[(int) (samples.length * 0.9999)] / 1e3, samples[samples.length - 1] / 1e3);
+        }
+    }
+
+    private static void run(String name, Map<Integer, Integer> map, Integer[] present, Integer[] absent, boolean report) {
+        long start = System.nanoTime();
+        for (Integer key : present) {
+            map.put(key, key);
+        }
+        long put = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        long sum = 0;
+        for (Integer key : present) {
+            Integer value = map.get(key);
+            if (value != null) {
+                sum += value;
+            }
+        }
+        long hit = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for (Integer key : absent) {
+            if (map.get(key) != null) {
+                sum++;
+            }
+        }
+        long miss = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for (Integer key : present) {
+            map.remove(key);
+        }
+        long remove = System.nanoTime() - start;
+        sink = sum;
+
+        if (report) {
+            System.out.printf("%s put %6.1f ms  get(hit) %6.1f ms  get(miss) %6.1f ms  remove %6.1f ms%n",
+                    name, put / 1e6, hit / 1e6, miss / 1e6, remove / 1e6);
+        }
+    }
+}
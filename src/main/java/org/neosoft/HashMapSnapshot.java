@@ -0,0 +1,612 @@
+package org.neosoft;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractCollection;
+import java.util.AbstractSet;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+
+// Binary snapshot of a map that can be reopened without rebuilding it. The file holds an
+// open-addressing index followed by the encoded records:
+//
+//   header   magic, version, entry count, slot count, segment shift (32 bytes)
+//   slots    slot count * 8 bytes: file offset of a record, 0 for a free slot
+//   records  hash, key length, value length, key bytes, value bytes
+//
+// open() memory-maps the file and serves lookups straight from the mapping, so startup costs
+// no more than mapping the file. Entries are only decoded onto the heap when they are read,
+// and only kept there once they are put or removed.
+public final class HashMapSnapshot {
+    private static final int MAGIC = 0x4E484D53; // "NHMS"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 32;
+    private static final int RECORD_HEADER_SIZE = 12;
+    // The file is mapped in 1 GB segments, a MappedByteBuffer cannot exceed 2 GB.
+    // The writer never lets a record or slot cross a segment boundary.
+    private static final int SEGMENT_SHIFT = 30;
+
+    private HashMapSnapshot() {
+    }
+
+    // Converts keys and values to and from bytes. Equal keys must encode to equal bytes,
+    // since lookups compare the encoded form.
+    public interface Codec<T> {
+        byte[] encode(T value);
+
+        // The buffer holds exactly the encoded bytes, between position and limit
+        T decode(ByteBuffer bytes);
+    }
+
+    public static final Codec<String> STRING = new Codec<String>() {
+        @Override
+        public byte[] encode(String value) {
+            return value.getBytes(StandardCharsets.UTF_8);
+        }
+
+        @Override
+        public String decode(ByteBuffer bytes) {
+            return StandardCharsets.UTF_8.decode(bytes).toString();
+        }
+    };
+
+    public static final Codec<Integer> INTEGER = new Codec<Integer>() {
+        @Override
+        public byte[] encode(Integer value) {
+            return ByteBuffer.allocate(4).putInt(value).array();
+        }
+
+        @Override
+        public Integer decode(ByteBuffer bytes) {
+            return bytes.getInt(bytes.position());
+        }
+    };
+
+    public static final Codec<Long> LONG = new Codec<Long>() {
+        @Override
+        public byte[] encode(Long value) {
+            return ByteBuffer.allocate(8).putLong(value).array();
+        }
+
+        @Override
+        public Long decode(ByteBuffer bytes) {
+            return bytes.getLong(bytes.position());
+        }
+    };
+
+    public static final Codec<byte[]> BYTES = new Codec<byte[]>() {
+        @Override
+        public byte[] encode(byte[] value) {
+            return value;
+        }
+
+        @Override
+        public byte[] decode(ByteBuffer bytes) {
+            byte[] copy = new byte[bytes.remaining()];
+            bytes.duplicate().get(copy);
+            return copy;
+        }
+    };
+
+    // *** Writing ***
+
+    // Writes every mapping of the map to the file, replacing it. Null keys and values are not supported.
+    public static <K, V> void write(Map<K, V> map, Path file, Codec<? super K> keyCodec, Codec<? super V> valueCodec) {
+        long slotCount = OpenHashMap.tableSizeFor(Math.max(2, map.size() * 2)); // Load factor of at most 0.5
+        if (slotCount < (long) map.size() * 2) {
+            throw new IllegalArgumentException("Map too big for a snapshot: " + map.size());
+        }
+        long[] slots = new long[(int) slotCount];
+        int mask = (int) slotCount - 1;
+        long dataOffset = HEADER_SIZE + slotCount * 8;
+        long count = 0;
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            SegmentWriter out = new SegmentWriter(channel, dataOffset);
+            for (Map.Entry<K, V> e : map.entrySet()) {
+                byte[] key = keyCodec.encode(Objects.requireNonNull(e.getKey()));
+                byte[] value = valueCodec.encode(Objects.requireNonNull(e.getValue()));
+                int hash = hash(key, 0, key.length);
+                long offset = out.writeRecord(hash, key, value);
+
+                // Keys are unique, so a free slot is all the probe needs to find
+                int i = hash & mask;
+                while (slots[i] != 0) {
+                    i = (i + 1) & mask;
+                }
+                slots[i] = offset;
+                count++;
+            }
+            out.flush();
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putInt(MAGIC).putInt(VERSION).putLong(count).putLong(slotCount).putInt(SEGMENT_SHIFT);
+            header.clear();
+            writeFully(channel, header, 0);
+
+            ByteBuffer chunk = ByteBuffer.allocate(1 << 16);
+            long position = HEADER_SIZE;
+            for (long slot : slots) {
+                if (!chunk.hasRemaining()) {
+                    chunk.flip();
+                    position += writeFully(channel, chunk, position);
+                    chunk.clear();
+                }
+                chunk.putLong(slot);
+            }
+            chunk.flip();
+            writeFully(channel, chunk, position);
+            channel.force(true);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot write snapshot " + file, e);
+        }
+    }
+
+    private static int writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        int written = 0;
+        while (buffer.hasRemaining()) {
+            written += channel.write(buffer, position + written);
+        }
+        return written;
+    }
+
+    // Appends records through a staging buffer, skipping to the next segment when a record
+    // would cross a segment boundary
+    private static final class SegmentWriter {
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocate(1 << 20);
+        private long bufferStart;
+
+        SegmentWriter(FileChannel channel, long start) {
+            this.channel = channel;
+            this.bufferStart = start;
+        }
+
+        long writeRecord(int hash, byte[] key, byte[] value) throws IOException {
+            long size = (long) RECORD_HEADER_SIZE + key.length + value.length;
+            long segmentSize = 1L << SEGMENT_SHIFT;
+            if (size > segmentSize) {
+                throw new IllegalArgumentException("Record too large for a snapshot: " + size + " bytes");
+            }
+            long position = bufferStart + buffer.position();
+            if ((position & (segmentSize - 1)) + size > segmentSize) {
+                flush();
+                position = (position + segmentSize - 1) & -segmentSize;
+                bufferStart = position;
+            }
+
+            putRecordPart(ByteBuffer.allocate(RECORD_HEADER_SIZE).putInt(hash).putInt(key.length).putInt(value.length).array());
+            putRecordPart(key);
+            putRecordPart(value);
+            return position;
+        }
+
+        private void putRecordPart(byte[] bytes) throws IOException {
+            int offset = 0;
+            while (offset < bytes.length) {
+                if (!buffer.hasRemaining()) {
+                    flush();
+                }
+                int n = Math.min(buffer.remaining(), bytes.length - offset);
+                buffer.put(bytes, offset, n);
+                offset += n;
+            }
+        }
+
+        void flush() throws IOException {
+            buffer.flip();
+            bufferStart += writeFully(channel, buffer, bufferStart);
+            buffer.clear();
+        }
+    }
+
+    static int hash(byte[] bytes, int from, int to) {
+        int h = 1;
+        for (int i = from; i < to; i++) {
+            h = 31 * h + bytes[i];
+        }
+        return OpenHashMap.spread(h);
+    }
+
+    // *** Reading ***
+
+    public static <K, V> SnapshotMap<K, V> open(Path file, Codec<K> keyCodec, Codec<V> valueCodec) {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long fileSize = channel.size();
+            if (fileSize < HEADER_SIZE) {
+                throw new IllegalArgumentException("Not a snapshot: " + file);
+            }
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            while (header.hasRemaining() && channel.read(header, header.position()) >= 0) {
+                // Keep reading until the header is complete
+            }
+            header.flip();
+            if (header.getInt() != MAGIC || header.getInt() != VERSION) {
+                throw new IllegalArgumentException("Not a snapshot, or an unsupported version: " + file);
+            }
+            long count = header.getLong();
+            long slotCount = header.getLong();
+            int segmentShift = header.getInt();
+
+            // The mappings stay valid after the channel is closed
+            long segmentSize = 1L << segmentShift;
+            MappedByteBuffer[] segments = new MappedByteBuffer[(int) ((fileSize + segmentSize - 1) >>> segmentShift)];
+            for (int s = 0; s < segments.length; s++) {
+                long start = (long) s << segmentShift;
+                segments[s] = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(segmentSize, fileSize - start));
+            }
+            return new SnapshotMap<>(segments, segmentShift, (int) count, (int) slotCount, keyCodec, valueCodec);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot open snapshot " + file, e);
+        }
+    }
+
+    // A map backed by a mapped snapshot. Reads go to the mapping; puts and removes are
+    // recorded in a heap overlay that shadows the snapshot, so the file is never modified.
+    // The overlay is keyed by the encoded key bytes, the same identity the snapshot uses, so
+    // keys without value equality such as byte[] behave consistently.
+    public static final class SnapshotMap<K, V> implements Map<K, V> {
+
+        private final MappedByteBuffer[] segments;
+        private final int segmentShift;
+        private final long segmentMask;
+        private final int slotMask;
+        private final Codec<K> keyCodec;
+        private final Codec<V> valueCodec;
+
+        private final HashMap<ByteBuffer, Overlay<K, V>> overlay = new HashMap<>();
+        private boolean snapshotCleared; // Set by clear(), hides every snapshot record
+        private int size;
+
+        // A put or removed key; value is null when the key was removed from the snapshot
+        private static final class Overlay<K, V> {
+            final K key;
+            final V value;
+
+            Overlay(K key, V value) {
+                this.key = key;
+                this.value = value;
+            }
+        }
+
+        SnapshotMap(MappedByteBuffer[] segments, int segmentShift, int count, int slotCount,
+                    Codec<K> keyCodec, Codec<V> valueCodec) {
+            this.segments = segments;
+            this.segmentShift = segmentShift;
+            this.segmentMask = (1L << segmentShift) - 1;
+            this.slotMask = slotCount - 1;
+            this.keyCodec = keyCodec;
+            this.valueCodec = valueCodec;
+            this.size = count;
+        }
+
+        // Number of entries that have been hydrated into the heap overlay
+        public int overlaySize() {
+            return overlay.size();
+        }
+
+        private ByteBuffer segment(long position) {
+            return segments[(int) (position >>> segmentShift)];
+        }
+
+        private int readInt(long position) {
+            return segment(position).getInt((int) (position & segmentMask));
+        }
+
+        private long readLong(long position) {
+            return segment(position).getLong((int) (position & segmentMask));
+        }
+
+        private ByteBuffer slice(long position, int length) {
+            ByteBuffer view = segment(position).duplicate();
+            int from = (int) (position & segmentMask);
+            view.limit(from + length);
+            view.position(from);
+            return view.slice();
+        }
+
+        // Returns the file offset of the record with these key bytes, or -1
+        private long findRecord(byte[] bytes) {
+            if (snapshotCleared) {
+                return -1;
+            }
+            int hash = hash(bytes, 0, bytes.length);
+            int i = hash & slotMask;
+            long offset;
+            while ((offset = readLong(HEADER_SIZE + (long) i * 8)) != 0) {
+                if (readInt(offset) == hash && readInt(offset + 4) == bytes.length
+                        && keyBytesEqual(offset + RECORD_HEADER_SIZE, bytes)) {
+                    return offset;
+                }
+                i = (i + 1) & slotMask;
+            }
+            return -1;
+        }
+
+        private boolean keyBytesEqual(long position, byte[] bytes) {
+            ByteBuffer segment = segment(position);
+            int from = (int) (position & segmentMask);
+            for (int i = 0; i < bytes.length; i++) {
+                if (segment.get(from + i) != bytes[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private K decodeKey(long offset) {
+            return keyCodec.decode(slice(offset + RECORD_HEADER_SIZE, readInt(offset + 4)));
+        }
+
+        private V decodeValue(long offset) {
+            int keyLength = readInt(offset + 4);
+            return valueCodec.decode(slice(offset + RECORD_HEADER_SIZE + keyLength, readInt(offset + 8)));
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return size == 0;
+        }
+
+        @Override
+        public V get(K key) {
+            return get(keyCodec.encode(key));
+        }
+
+        private V get(byte[] bytes) {
+            Overlay<K, V> o = overlay.get(ByteBuffer.wrap(bytes));
+            if (o != null) {
+                return o.value;
+            }
+            long offset = findRecord(bytes);
+            return (offset < 0) ? null : decodeValue(offset);
+        }
+
+        @Override
+        public boolean containsKey(K key) {
+            return get(key) != null;
+        }
+
+        @Override
+        public V put(K key, V value) {
+            Objects.requireNonNull(key);
+            Objects.requireNonNull(value);
+            byte[] bytes = keyCodec.encode(key);
+            V oldValue = get(bytes);
+            // Copied, the codec may hand back the caller's own array
+            overlay.put(ByteBuffer.wrap(bytes.clone()), new Overlay<>(key, value));
+            if (oldValue == null) {
+                size++;
+            }
+            return oldValue;
+        }
+
+        @Override
+        public V remove(K key) {
+            byte[] bytes = keyCodec.encode(key);
+            V oldValue = get(bytes);
+            if (oldValue == null) {
+                return null;
+            }
+            if (findRecord(bytes) >= 0) {
+                overlay.put(ByteBuffer.wrap(bytes.clone()), new Overlay<>(key, null));
+            } else {
+                overlay.remove(ByteBuffer.wrap(bytes));
+            }
+            size--;
+            return oldValue;
+        }
+
+        // Hides every snapshot entry without reading them; the mapping itself is left alone
+        @Override
+        public void clear() {
+            overlay.clear();
+            snapshotCleared = true;
+            size = 0;
+        }
+
+        @Override
+        public Set<K> keySet() {
+            return new AbstractSet<K>() {
+                @Override
+                public Iterator<K> iterator() {
+                    Iterator<Map.Entry<K, V>> it = new EntryIterator();
+                    return new Iterator<K>() {
+                        @Override
+                        public boolean hasNext() {
+                            return it.hasNext();
+                        }
+
+                        @Override
+                        public K next() {
+                            return it.next().getKey();
+                        }
+
+                        @Override
+                        public void remove() {
+                            it.remove();
+                        }
+                    };
+                }
+
+                @Override
+                public int size() {
+                    return size;
+                }
+            };
+        }
+
+        @Override
+        public Collection<V> values() {
+            return new AbstractCollection<V>() {
+                @Override
+                public Iterator<V> iterator() {
+                    Iterator<Map.Entry<K, V>> it = new EntryIterator();
+                    return new Iterator<V>() {
+                        @Override
+                        public boolean hasNext() {
+                            return it.hasNext();
+                        }
+
+                        @Override
+                        public V next() {
+                            return it.next().getValue();
+                        }
+
+                        @Override
+                        public void remove() {
+                            it.remove();
+                        }
+                    };
+                }
+
+                @Override
+                public int size() {
+                    return size;
+                }
+            };
+        }
+
+        @Override
+        public Set<Map.Entry<K, V>> entrySet() {
+            return new AbstractSet<Map.Entry<K, V>>() {
+                @Override
+                public Iterator<Map.Entry<K, V>> iterator() {
+                    return new EntryIterator();
+                }
+
+                @Override
+                public int size() {
+                    return size;
+                }
+            };
+        }
+
+        // Visits the overlay's live entries, then the snapshot records it does not shadow.
+        // Entries are decoded as they are visited. The overlay goes first so that removing a
+        // snapshot entry, which adds a tombstone to the overlay, cannot invalidate its iterator.
+        private final class EntryIterator implements Iterator<Map.Entry<K, V>> {
+            private final Iterator<Map.Entry<ByteBuffer, Overlay<K, V>>> overlayIterator = overlay.entrySet().iterator();
+            private int slot = snapshotCleared ? slotMask + 1 : 0;
+            private SnapshotEntry next;
+            private SnapshotEntry last;
+
+            EntryIterator() {
+                advance();
+            }
+
+            private void advance() {
+                next = null;
+                while (overlayIterator.hasNext()) {
+                    Map.Entry<ByteBuffer, Overlay<K, V>> e = overlayIterator.next();
+                    Overlay<K, V> o = e.getValue();
+                    if (o.value != null) {
+                        next = new SnapshotEntry(o.key, o.value, e.getKey());
+                        return;
+                    }
+                }
+                while (slot <= slotMask) {
+                    long offset = readLong(HEADER_SIZE + (long) slot++ * 8);
+                    if (offset != 0) {
+                        // The record's key bytes are looked up in place, without decoding
+                        ByteBuffer keyBytes = slice(offset + RECORD_HEADER_SIZE, readInt(offset + 4));
+                        if (!overlay.containsKey(keyBytes)) {
+                            next = new SnapshotEntry(decodeKey(offset), decodeValue(offset), keyBytes);
+                            return;
+                        }
+                    }
+                }
+            }
+
+            @Override
+            public boolean hasNext() {
+                return next != null;
+            }
+
+            @Override
+            public Map.Entry<K, V> next() {
+                SnapshotEntry e = next;
+                if (e == null) {
+                    throw new NoSuchElementException();
+                }
+                last = e;
+                advance();
+                return e;
+            }
+
+            // Tombstoned rather than removed from the overlay: replacing the value of a key the
+            // overlay already holds is not a structural change, so its iterator stays valid
+            @Override
+            public void remove() {
+                if (last == null) {
+                    throw new IllegalStateException();
+                }
+                byte[] bytes = new byte[last.keyBytes.remaining()];
+                last.keyBytes.duplicate().get(bytes);
+                overlay.put(ByteBuffer.wrap(bytes), new Overlay<>(last.key, null));
+                size--;
+                last = null;
+            }
+        }
+
+        private final class SnapshotEntry implements Map.Entry<K, V> {
+            private final K key;
+            private V value;
+            private final ByteBuffer keyBytes; // Encoded key, the overlay's key for it
+
+            SnapshotEntry(K key, V value, ByteBuffer keyBytes) {
+                this.key = key;
+                this.value = value;
+                this.keyBytes = keyBytes;
+            }
+
+            @Override
+            public K getKey() {
+                return key;
+            }
+
+            @Override
+            public V getValue() {
+                return value;
+            }
+
+            // Writes through, hydrating the entry into the overlay
+            @Override
+            public V setValue(V value) {
+                V oldValue = this.value;
+                this.value = value;
+                put(key, value);
+                return oldValue;
+            }
+
+            @Override
+            public boolean equals(Object o) {
+                if (!(o instanceof Map.Entry)) {
+                    return false;
+                }
+                Map.Entry<?, ?> e = (Map.Entry<?, ?>) o;
+                return Objects.equals(key, e.getKey()) && Objects.equals(value, e.getValue());
+            }
+
+            @Override
+            public int hashCode() {
+                return Objects.hashCode(key) ^ Objects.hashCode(value);
+            }
+        }
+    }
+}
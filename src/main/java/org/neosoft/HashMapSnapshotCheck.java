@@ -0,0 +1,54 @@
+package org.neosoft;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+// Mutates a byte[]-keyed snapshot, whose keys have no value equality, and checks that every
+// put, remove and clear is visible through get, size and iteration.
+// Run with: java -ea org.neosoft.HashMapSnapshotCheck
+public class HashMapSnapshotCheck {
+    public static void main(String[] args) throws Exception {
+        Path file = Files.createTempFile("snapshot", ".bin");
+        try {
+            Map<byte[], byte[]> source = new HashMap<>();
+            source.put(new byte[] {1}, new byte[] {10});
+            source.put(new byte[] {2}, new byte[] {20});
+            HashMapSnapshot.write(source, file, HashMapSnapshot.BYTES, HashMapSnapshot.BYTES);
+
+            Map<byte[], byte[]> map = HashMapSnapshot.open(file, HashMapSnapshot.BYTES, HashMapSnapshot.BYTES);
+            check(Arrays.equals(map.get(new byte[] {1}), new byte[] {10}), "snapshot get");
+
+            map.remove(new byte[] {1});
+            check(map.get(new byte[] {1}) == null, "get after remove");
+            map.put(new byte[] {2}, new byte[] {99});
+            check(Arrays.equals(map.get(new byte[] {2}), new byte[] {99}), "get after put");
+            check(map.size() == 1, "size " + map.size());
+            check(count(map) == 1, "iterated " + count(map));
+
+            map.put(new byte[] {3}, new byte[] {30});
+            map.clear();
+            check(map.get(new byte[] {2}) == null && map.get(new byte[] {3}) == null, "get after clear");
+            check(map.size() == 0 && count(map) == 0, "empty after clear");
+            map.put(new byte[] {1}, new byte[] {11});
+            check(Arrays.equals(map.get(new byte[] {1}), new byte[] {11}) && count(map) == 1, "put after clear");
+            System.out.println("OK");
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    private static int count(Map<byte[], byte[]> map) {
+        int n = 0;
+        for (Map.Entry<byte[], byte[]> ignored : map.entrySet()) {
+            n++;
+        }
+        return n;
+    }
+
+    private static void check(boolean condition, String what) {
+        if (!condition) {
+            throw new AssertionError(what);
+        }
+    }
+}
@@ -0,0 +1,171 @@
+package org.neosoft;
+
+// Point-in-time health report of a chained hash table, returned by HashMap.stats() and
+// LinkedHashMap.stats(). The bucket figures are computed by scanning the table when stats()
+// is called. The resize figures are only recorded while enableStats() is on, so a map that
+// never enables them pays nothing beyond a null check per resize.
+public final class HashTableStats {
+    // Chains of this length or longer share the last histogram slot
+    public static final int HISTOGRAM_SIZE = 16;
+
+    // Rough per-object sizes for a 64-bit JVM with compressed oops
+    static final int OBJECT_HEADER = 12;
+    static final int REFERENCE_SIZE = 4;
+    static final int ARRAY_HEADER = 16;
+
+    // Notified after every resize while stats are enabled, to export them as metrics.
+    // Called on the thread that triggered the resize, so it must be quick.
+    public interface Listener {
+        void onResize(Object map, int oldCapacity, int newCapacity, int size, long nanos);
+    }
+
+    private final int capacity;
+    private final int size;
+    private final int occupiedBuckets;
+    private final int[] chainLengths;
+    private final int maxChainLength;
+    private final int treeBins;
+    private final long resizeCount;
+    private final long resizeNanos;
+    private final long lastResizeNanos;
+    private final long estimatedBytes;
+
+    HashTableStats(int capacity, int size, int occupiedBuckets, int[] chainLengths, int maxChainLength, int treeBins,
+                   Recorder recorder, long estimatedBytes) {
+        this.capacity = capacity;
+        this.size = size;
+        this.occupiedBuckets = occupiedBuckets;
+        this.chainLengths = chainLengths;
+        this.maxChainLength = maxChainLength;
+        this.treeBins = treeBins;
+        this.resizeCount = (recorder != null) ? recorder.resizeCount : 0;
+        this.resizeNanos = (recorder != null) ? recorder.resizeNanos : 0;
+        this.lastResizeNanos = (recorder != null) ? recorder.lastResizeNanos : 0;
+        this.estimatedBytes = estimatedBytes;
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int occupiedBuckets() {
+        return occupiedBuckets;
+    }
+
+    // Fraction of buckets holding at least one entry
+    public double occupancy() {
+        return (capacity == 0) ? 0 : (double) occupiedBuckets / capacity;
+    }
+
+    public double loadFactor() {
+        return (capacity == 0) ? 0 : (double) size / capacity;
+    }
+
+    // Number of buckets per chain length; index 0 counts the empty buckets
+    public int[] chainLengthHistogram() {
+        return chainLengths.clone();
+    }
+
+    public int maxChainLength() {
+        return maxChainLength;
+    }
+
+    public double averageChainLength() {
+        return (occupiedBuckets == 0) ? 0 : (double) size / occupiedBuckets;
+    }
+
+    // Buckets that were turned into red-black trees (HashMap only)
+    public int treeBins() {
+        return treeBins;
+    }
+
+    public long resizeCount() {
+        return resizeCount;
+    }
+
+    public long resizeNanos() {
+        return resizeNanos;
+    }
+
+    public long lastResizeNanos() {
+        return lastResizeNanos;
+    }
+
+    // Estimated heap held by the table and entries, excluding the keys and values themselves
+    public long estimatedBytes() {
+        return estimatedBytes;
+    }
+
+    public double bytesPerEntry() {
+        return (size == 0) ? 0 : (double) estimatedBytes / size;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("capacity=%d size=%d loadFactor=%.3f occupancy=%.3f avgChain=%.2f maxChain=%d",
+                capacity, size, loadFactor(), occupancy(), averageChainLength(), maxChainLength));
+        if (treeBins > 0) {
+            sb.append(" treeBins=").append(treeBins);
+        }
+        sb.append(String.format(" resizes=%d resizeMs=%.3f bytesPerEntry=%.1f",
+                resizeCount, resizeNanos / 1e6, bytesPerEntry()));
+        sb.append(" chains=[");
+        for (int i = 0; i < chainLengths.length; i++) {
+            if (i > 0) {
+                sb.append(' ');
+            }
+            sb.append(i).append((i == chainLengths.length - 1) ? "+:" : ":").append(chainLengths[i]);
+        }
+        return sb.append(']').toString();
+    }
+
+    static long align(long bytes) {
+        return (bytes + 7) & ~7L;
+    }
+
+    static long arrayBytes(int length) {
+        return align(ARRAY_HEADER + (long) length * REFERENCE_SIZE);
+    }
+
+    // Resize counters of a map that has stats enabled
+    static final class Recorder {
+        private final Listener listener;
+        long resizeCount;
+        long resizeNanos;
+        long lastResizeNanos;
+
+        Recorder(Listener listener) {
+            this.listener = listener;
+        }
+
+        void resized(Object map, int oldCapacity, int newCapacity, int size, long nanos) {
+            resizeCount++;
+            resizeNanos += nanos;
+            lastResizeNanos = nanos;
+            if (listener != null) {
+                listener.onResize(map, oldCapacity, newCapacity, size, nanos);
+            }
+        }
+    }
+
+    // Accumulates the bucket scan
+    static final class Builder {
+        final int[] chainLengths = new int[HISTOGRAM_SIZE];
+        int occupiedBuckets;
+        int maxChainLength;
+        int treeBins;
+
+        void bucket(int length) {
+            chainLengths[Math.min(length, HISTOGRAM_SIZE - 1)]++;
+            if (length > 0) {
+                occupiedBuckets++;
+            }
+            maxChainLength = Math.max(maxChainLength, length);
+        }
+    }
+}
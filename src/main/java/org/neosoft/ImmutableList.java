@@ -0,0 +1,177 @@
+package org.neosoft;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Objects;
+import java.util.RandomAccess;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+
+// List that cannot change after it is built, safe to publish to any number of reader threads
+// without locking. Holds exactly its elements: the builder trims its spare capacity, and
+// subList is an O(1) view sharing the same array through an offset and a length.
+//
+// The mutators inherited from AbstractList throw UnsupportedOperationException.
+public final class ImmutableList<E> extends AbstractList<E> implements RandomAccess {
+    private static final ImmutableList<Object> EMPTY = new ImmutableList<>(new Object[0], 0, 0);
+
+    private final Object[] elements;
+    private final int offset;
+    private final int size;
+
+    private ImmutableList(Object[] elements, int offset, int size) {
+        this.elements = elements;
+        this.offset = offset;
+        this.size = size;
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <E> ImmutableList<E> of() {
+        return (ImmutableList<E>) EMPTY;
+    }
+
+    // Copied element by element into an Object[]: the varargs array itself never escapes,
+    // and its runtime type may be narrower than E[]
+    @SafeVarargs
+    public static <E> ImmutableList<E> of(E... elements) {
+        if (elements.length == 0)
+            return of();
+        Object[] a = new Object[elements.length];
+        for (int i = 0; i < a.length; i++)
+            a[i] = elements[i];
+        return new ImmutableList<>(a, 0, a.length);
+    }
+
+    private static <E> ImmutableList<E> copyOf(Object[] a) {
+        return (a.length == 0) ? of() : new ImmutableList<>(Arrays.copyOf(a, a.length, Object[].class), 0, a.length);
+    }
+
+    // A subList view is copied, so that it does not keep its parent's whole array alive
+    public static <E> ImmutableList<E> copyOf(Collection<? extends E> c) {
+        if (c instanceof ImmutableList) {
+            @SuppressWarnings("unchecked")
+            ImmutableList<E> list = (ImmutableList<E>) c;
+            if (list.offset == 0 && list.size == list.elements.length)
+                return list;
+        }
+        // toArray may return the collection's own array or a subtype array
+        return copyOf(c.toArray());
+    }
+
+    // Wraps an array the caller gives up; CopyOnWriteArrayList snapshots never change
+    static <E> ImmutableList<E> wrap(Object[] elements) {
+        return (elements.length == 0) ? of() : new ImmutableList<>(elements, 0, elements.length);
+    }
+
+    public static <E> Builder<E> builder() {
+        return new Builder<>();
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public E get(int index) {
+        if (index < 0 || index >= size)
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        return (E) elements[offset + index];
+    }
+
+    @Override
+    public int indexOf(Object o) {
+        for (int i = 0; i < size; i++)
+            if (Objects.equals(o, elements[offset + i]))
+                return i;
+        return -1;
+    }
+
+    @Override
+    public int lastIndexOf(Object o) {
+        for (int i = size - 1; i >= 0; i--)
+            if (Objects.equals(o, elements[offset + i]))
+                return i;
+        return -1;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return indexOf(o) >= 0;
+    }
+
+    // A view over the same array, no copy
+    @Override
+    public ImmutableList<E> subList(int fromIndex, int toIndex) {
+        if (fromIndex < 0 || toIndex > size || fromIndex > toIndex)
+            throw new IndexOutOfBoundsException("From Index: " + fromIndex + ", To Index: " + toIndex + ", Size: " + size);
+        if (fromIndex == 0 && toIndex == size)
+            return this;
+        return new ImmutableList<>(elements, offset + fromIndex, toIndex - fromIndex);
+    }
+
+    @Override
+    public Object[] toArray() {
+        return Arrays.copyOfRange(elements, offset, offset + size, Object[].class);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void forEach(Consumer<? super E> action) {
+        Objects.requireNonNull(action);
+        for (int i = offset, end = offset + size; i < end; i++)
+            action.accept((E) elements[i]);
+    }
+
+    @Override
+    public Spliterator<E> spliterator() {
+        return Spliterators.spliterator(elements, offset, offset + size, Spliterator.ORDERED | Spliterator.IMMUTABLE);
+    }
+
+    // Collects elements for a bulk build. build() can be called more than once; each list it
+    // returns is independent of later additions.
+    public static final class Builder<E> {
+        private static final int DEFAULT_CAPACITY = 10;
+        private Object[] elements = new Object[DEFAULT_CAPACITY];
+        private int size;
+
+        private Builder() {
+        }
+
+        private void ensureCapacity(int minCapacity) {
+            if (minCapacity < 0)
+                throw new OutOfMemoryError();
+            if (minCapacity - elements.length > 0) {
+                int newCapacity = elements.length + (elements.length >> 1); // Grow by 50%
+                if (newCapacity - minCapacity < 0)
+                    newCapacity = minCapacity;
+                elements = Arrays.copyOf(elements, newCapacity);
+            }
+        }
+
+        public Builder<E> add(E e) {
+            ensureCapacity(size + 1);
+            elements[size++] = e;
+            return this;
+        }
+
+        public Builder<E> addAll(Collection<? extends E> c) {
+            Object[] a = c.toArray();
+            ensureCapacity(size + a.length);
+            System.arraycopy(a, 0, elements, size, a.length);
+            size += a.length;
+            return this;
+        }
+
+        // A full array is handed over as is: the next add has to grow, which copies it
+        public ImmutableList<E> build() {
+            if (size == 0)
+                return of();
+            Object[] a = (size == elements.length) ? elements : Arrays.copyOf(elements, size);
+            return new ImmutableList<>(a, 0, size);
+        }
+    }
+}
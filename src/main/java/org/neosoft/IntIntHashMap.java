@@ -0,0 +1,243 @@
+package org.neosoft;
+
+// int -> int map without boxing, following the method shapes of org.neosoft.Map.
+// Uses the same flat-array linear probing as OpenHashMap. Key 0 marks a free slot,
+// so a mapping for key 0 is kept outside the table. Methods that would return null
+// in org.neosoft.Map return 0 when there is no mapping.
+public class IntIntHashMap {
+    private static final int DEFAULT_CAPACITY = 16;
+    private static final float DEFAULT_LOAD_FACTOR = 0.75f;
+
+    private int[] keys;
+    private int[] values;
+    private int size;
+    private int mask;
+    private int threshold;
+    private final float loadFactor;
+
+    private boolean hasZeroKey;
+    private int zeroValue;
+
+    // Receives each mapping from forEach
+    public interface EntryConsumer {
+        void accept(int key, int value);
+    }
+
+    public IntIntHashMap() {
+        this(DEFAULT_CAPACITY, DEFAULT_LOAD_FACTOR);
+    }
+
+    public IntIntHashMap(int initialCapacity) {
+        this(initialCapacity, DEFAULT_LOAD_FACTOR);
+    }
+
+    public IntIntHashMap(int initialCapacity, float loadFactor) {
+        if (initialCapacity <= 0) {
+            throw new IllegalArgumentException("Invalid initial capacity: " + initialCapacity);
+        }
+        if (loadFactor <= 0 || loadFactor >= 1 || Float.isNaN(loadFactor)) {
+            throw new IllegalArgumentException("Invalid load factor: " + loadFactor);
+        }
+        this.loadFactor = loadFactor;
+        allocate(OpenHashMap.tableSizeFor((int) Math.ceil(initialCapacity / loadFactor)));
+    }
+
+    private void allocate(int capacity) {
+        keys = new int[capacity];
+        values = new int[capacity];
+        mask = capacity - 1;
+        threshold = Math.min((int) (capacity * loadFactor), capacity - 1);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    // Returns the slot holding the non-zero key, or -1 if it is absent
+    private int findSlot(int key) {
+        int[] ks = keys;
+        int m = mask;
+        int i = OpenHashMap.spread(key) & m;
+        int cur;
+        while ((cur = ks[i]) != 0) {
+            if (cur == key) {
+                return i;
+            }
+            i = (i + 1) & m;
+        }
+        return -1;
+    }
+
+    // Returns the slot holding the non-zero key, claiming a free slot for it if it is absent
+    private int insertSlot(int key) {
+        int[] ks = keys;
+        int m = mask;
+        int i = OpenHashMap.spread(key) & m;
+        int cur;
+        while ((cur = ks[i]) != 0) {
+            if (cur == key) {
+                return i;
+            }
+            i = (i + 1) & m;
+        }
+        ks[i] = key;
+        size++;
+        return ~i; // Negative marks a new slot
+    }
+
+    public int get(int key) {
+        return getOrDefault(key, 0);
+    }
+
+    public int getOrDefault(int key, int defaultValue) {
+        if (key == 0) {
+            return hasZeroKey ? zeroValue : defaultValue;
+        }
+        int slot = findSlot(key);
+        return (slot < 0) ? defaultValue : values[slot];
+    }
+
+    public boolean containsKey(int key) {
+        return (key == 0) ? hasZeroKey : findSlot(key) >= 0;
+    }
+
+    // Associates the value with the key and returns the previous value, or 0
+    public int put(int key, int value) {
+        if (key == 0) {
+            int oldValue = zeroValue;
+            if (!hasZeroKey) {
+                hasZeroKey = true;
+                size++;
+            }
+            zeroValue = value;
+            return oldValue;
+        }
+        int slot = insertSlot(key);
+        if (slot >= 0) {
+            int oldValue = values[slot];
+            values[slot] = value;
+            return oldValue;
+        }
+        values[~slot] = value;
+        if (size > threshold) {
+            resize();
+        }
+        return 0;
+    }
+
+    // Adds increment to the value mapped to the key (0 when absent) and returns the previous value
+    public int addTo(int key, int increment) {
+        if (key == 0) {
+            int oldValue = zeroValue;
+            if (!hasZeroKey) {
+                hasZeroKey = true;
+                size++;
+            }
+            zeroValue = oldValue + increment;
+            return oldValue;
+        }
+        int slot = insertSlot(key);
+        if (slot >= 0) {
+            int oldValue = values[slot];
+            values[slot] = oldValue + increment;
+            return oldValue;
+        }
+        values[~slot] = increment;
+        if (size > threshold) {
+            resize();
+        }
+        return 0;
+    }
+
+    // Removes the mapping for the key and returns its value, or 0
+    public int remove(int key) {
+        if (key == 0) {
+            if (!hasZeroKey) {
+                return 0;
+            }
+            int oldValue = zeroValue;
+            hasZeroKey = false;
+            zeroValue = 0;
+            size--;
+            return oldValue;
+        }
+        int slot = findSlot(key);
+        if (slot < 0) {
+            return 0;
+        }
+        int oldValue = values[slot];
+        removeAt(slot);
+        return oldValue;
+    }
+
+    // Backward-shift deletion, see OpenHashMap.removeAt
+    private void removeAt(int gap) {
+        int[] ks = keys;
+        int[] vs = values;
+        int m = mask;
+        int i = (gap + 1) & m;
+        int k;
+        while ((k = ks[i]) != 0) {
+            int home = OpenHashMap.spread(k) & m;
+            if (((i - home) & m) >= ((i - gap) & m)) {
+                ks[gap] = k;
+                vs[gap] = vs[i];
+                gap = i;
+            }
+            i = (i + 1) & m;
+        }
+        ks[gap] = 0;
+        vs[gap] = 0;
+        size--;
+    }
+
+    private void resize() {
+        int[] oldKeys = keys;
+        int[] oldValues = values;
+        if (oldKeys.length == OpenHashMap.MAXIMUM_CAPACITY) {
+            throw new IllegalStateException("Map too big");
+        }
+        allocate(oldKeys.length << 1);
+
+        int[] ks = keys;
+        int m = mask;
+        for (int j = 0; j < oldKeys.length; j++) {
+            int k = oldKeys[j];
+            if (k != 0) {
+                int i = OpenHashMap.spread(k) & m;
+                while (ks[i] != 0) {
+                    i = (i + 1) & m;
+                }
+                ks[i] = k;
+                values[i] = oldValues[j];
+            }
+        }
+    }
+
+    public void clear() {
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = 0;
+            values[i] = 0;
+        }
+        hasZeroKey = false;
+        zeroValue = 0;
+        size = 0;
+    }
+
+    public void forEach(EntryConsumer action) {
+        if (hasZeroKey) {
+            action.accept(0, zeroValue);
+        }
+        int[] ks = keys;
+        int[] vs = values;
+        for (int i = 0; i < ks.length; i++) {
+            if (ks[i] != 0) {
+                action.accept(ks[i], vs[i]);
+            }
+        }
+    }
+}
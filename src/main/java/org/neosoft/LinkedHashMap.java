@@ -1,17 +1,33 @@
 package org.neosoft;
 
+import java.util.AbstractCollection;
 import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Collection;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
 import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
 import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
 
 public class LinkedHashMap<K, V> extends AbstractMap<K, V> {
     private static class Entry<K, V> implements Map.Entry<K, V> {
+        // Spread hash of the key, cached so that a resize never calls hashCode() again
+        final int hash;
         K key;
         V value;
-        Entry<K, V> next;
-        Entry<K, V> prev;
-
-        Entry(K key, V value) {
+        Entry<K, V> next; // Bucket chain
+        // Order list, from the eldest entry after the header to the newest before it.
+        // Bucket chains and the order list never share links, so a resize can rebuild
+        // the chains without disturbing the order.
+        Entry<K, V> before;
+        Entry<K, V> after;
+
+        Entry(int hash, K key, V value) {
+            this.hash = hash;
             this.key = key;
             this.value = value;
         }
@@ -32,13 +48,41 @@ public class LinkedHashMap<K, V> extends AbstractMap<K, V> {
             this.value = value;
             return oldValue;
         }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Map.Entry)) {
+                return false;
+            }
+            Map.Entry<?, ?> e = (Map.Entry<?, ?>) o;
+            return Objects.equals(key, e.getKey()) && Objects.equals(value, e.getValue());
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hashCode(key) ^ Objects.hashCode(value);
+        }
     }
 
-    private final int capacity;
+    private int capacity;
     private final float loadFactor;
     private int size;
     private Entry<K, V>[] table;
     private Entry<K, V> header;
+    // With accessOrder, get and put move an entry to the newest end of the order list
+    private final boolean accessOrder;
+    private final int maxSize;
+
+    // Structural modification count, used by the view iterators to fail fast.
+    // In access order a get() that moves an entry counts too.
+    private int modCount;
+
+    private Set<K> keySet;
+    private Collection<V> values;
+    private Set<Map.Entry<K, V>> entrySet;
+
+    // Resize counters, null unless enableStats() was called
+    private HashTableStats.Recorder stats;
 
     public LinkedHashMap() {
         this(16, 0.75f);
@@ -49,72 +93,135 @@ public class LinkedHashMap<K, V> extends AbstractMap<K, V> {
     }
 
     public LinkedHashMap(int initialCapacity, float loadFactor) {
+        this(initialCapacity, loadFactor, false, Integer.MAX_VALUE);
+    }
+
+    public LinkedHashMap(int initialCapacity, float loadFactor, boolean accessOrder) {
+        this(initialCapacity, loadFactor, accessOrder, Integer.MAX_VALUE);
+    }
+
+    // A bounded map evicts its eldest entry whenever a put takes it past maxSize.
+    // With accessOrder that makes it an LRU cache.
+    public LinkedHashMap(int initialCapacity, float loadFactor, boolean accessOrder, int maxSize) {
         if (initialCapacity <= 0) {
             throw new IllegalArgumentException("Invalid initial capacity: " + initialCapacity);
         }
         if (loadFactor <= 0 || Float.isNaN(loadFactor)) {
             throw new IllegalArgumentException("Invalid load factor: " + loadFactor);
         }
-        this.capacity = initialCapacity;
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("Invalid maximum size: " + maxSize);
+        }
+        this.accessOrder = accessOrder;
+        this.maxSize = maxSize;
+        // The table size is kept a power of two so that an index is a mask of the hash
+        this.capacity = OpenHashMap.tableSizeFor(initialCapacity);
         this.loadFactor = loadFactor;
         this.table = new Entry[capacity];
-        this.header = new Entry<>(null, null);
-        header.next = header;
-        header.prev = header;
+        this.header = new Entry<>(0, null, null);
+        header.before = header;
+        header.after = header;
     }
 
-    private int hash(K key) {
-        // Custom hash function based on Object.hashCode()
-        return (key == null) ? 0 : key.hashCode();
+    private static int hash(Object key) {
+        // Fold the high bits into the low ones, which are all the index mask keeps
+        int h;
+        return (key == null) ? 0 : (h = key.hashCode()) ^ (h >>> 16);
     }
 
     private int getIndex(int hash) {
-        return (hash & 0x7FFFFFFF) % capacity;
+        return hash & (capacity - 1);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    // The entry that would be evicted next, without touching the order; null when empty
+    public Map.Entry<K, V> eldest() {
+        Entry<K, V> eldest = header.after;
+        return (eldest == header) ? null : eldest;
     }
 
     @Override
     public V put(K key, V value) {
         int hash = hash(key);
-        int index = getIndex(hash);
-
-        Entry<K, V> existingEntry = findEntry(key);
+        Entry<K, V> existingEntry = findEntry(hash, key);
         if (existingEntry != null) {
             V oldValue = existingEntry.value;
             existingEntry.value = value;
+            recordAccess(existingEntry);
             return oldValue;
         }
 
-        Entry<K, V> newEntry = new Entry<>(key, value);
-        addEntry(newEntry, index);
+        addEntry(new Entry<>(hash, key, value));
+
+        Entry<K, V> eldest = header.after;
+        if (size > maxSize || removeEldestEntry(eldest)) {
+            removeEntry(eldest);
+        }
         return null;
     }
 
     @Override
     public V get(Object key) {
-        Entry<K, V> entry = findEntry(key);
-        return (entry != null) ? entry.value : null;
+        Entry<K, V> entry = findEntry(hash(key), key);
+        if (entry == null) {
+            return null;
+        }
+        recordAccess(entry);
+        return entry.value;
+    }
+
+    // Like get, but not counted as an access: the entry keeps its place in the order
+    public V peek(Object key) {
+        Entry<K, V> entry = findEntry(hash(key), key);
+        return (entry == null) ? null : entry.value;
+    }
+
+    // Hook called after every insertion with the eldest entry, which is removed if this
+    // returns true. Subclasses can override it for policies other than a fixed maxSize.
+    protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+        return false;
+    }
+
+    // Moves the entry to the newest end in access order: four link updates, no allocation
+    private void recordAccess(Entry<K, V> entry) {
+        if (accessOrder && header.before != entry) {
+            unlinkOrder(entry);
+            linkLast(entry);
+            modCount++;
+        }
+    }
+
+    private void linkLast(Entry<K, V> entry) {
+        entry.before = header.before;
+        entry.after = header;
+        header.before.after = entry;
+        header.before = entry;
+    }
+
+    private void unlinkOrder(Entry<K, V> entry) {
+        entry.before.after = entry.after;
+        entry.after.before = entry.before;
+        entry.before = null;
+        entry.after = null;
     }
 
     @Override
     public boolean containsKey(Object key) {
-        return findEntry(key) != null;
+        return findEntry(hash(key), key) != null;
     }
 
     @Override
     public V remove(Object key) {
-        int hash = hash((K) key);
-        int index = getIndex(hash);
-
-        Entry<K, V> entry = table[index];
-        while (entry != null) {
-            if (entry.key.equals(key)) {
-                removeEntry(entry);
-                return entry.value;
-            }
-            entry = entry.next;
+        Entry<K, V> entry = findEntry(hash(key), key);
+        if (entry == null) {
+            return null;
         }
-
-        return null;
+        removeEntry(entry);
+        return entry.value;
     }
 
     @Override
@@ -122,24 +229,46 @@ public class LinkedHashMap<K, V> extends AbstractMap<K, V> {
         for (int i = 0; i < capacity; i++) {
             table[i] = null;
         }
-        header.next = header;
-        header.prev = header;
+        header.before = header;
+        header.after = header;
         size = 0;
+        modCount++;
     }
 
+    // The views are created once and walk the order list directly, so iterating them
+    // allocates nothing but the iterator and bulk operations need no copy
     @Override
-    public Set<Map.Entry<K, V>> entrySet() {
-        // Create a custom set view of the entries in the LinkedHashMap
-        return null;
+    public Set<K> keySet() {
+        Set<K> ks = keySet;
+        if (ks == null) {
+            keySet = ks = new KeySet();
+        }
+        return ks;
+    }
+
+    @Override
+    public Collection<V> values() {
+        Collection<V> vs = values;
+        if (vs == null) {
+            values = vs = new Values();
+        }
+        return vs;
     }
 
-    private Entry<K, V> findEntry(Object key) {
-        int hash = hash((K) key);
-        int index = getIndex(hash);
+    @Override
+    public Set<Map.Entry<K, V>> entrySet() {
+        Set<Map.Entry<K, V>> es = entrySet;
+        if (es == null) {
+            entrySet = es = new EntrySet();
+        }
+        return es;
+    }
 
-        Entry<K, V> entry = table[index];
+    // Walks only the bucket chain of the key, so a lookup stays O(1) at any size
+    private Entry<K, V> findEntry(int hash, Object key) {
+        Entry<K, V> entry = table[getIndex(hash)];
         while (entry != null) {
-            if (key == null ? entry.key == null : key.equals(entry.key)) {
+            if (entry.hash == hash && (key == entry.key || (key != null && key.equals(entry.key)))) {
                 return entry;
             }
             entry = entry.next;
@@ -148,22 +277,20 @@ public class LinkedHashMap<K, V> extends AbstractMap<K, V> {
         return null;
     }
 
-    private void addEntry(Entry<K, V> newEntry, int index) {
-        Entry<K, V> first = table[index];
+    private void addEntry(Entry<K, V> newEntry) {
+        int index = getIndex(newEntry.hash);
+        newEntry.next = table[index];
         table[index] = newEntry;
+        linkLast(newEntry);
+        modCount++;
 
-        newEntry.next = first;
-        newEntry.prev = header;
-        header.next.prev = newEntry;
-        header.next = newEntry;
-
-        if (size++ >= loadFactor * capacity) {
+        if (++size > loadFactor * capacity && capacity < OpenHashMap.MAXIMUM_CAPACITY) {
             resize();
         }
     }
 
     private void removeEntry(Entry<K, V> entry) {
-        int index = getIndex(hash(entry.key));
+        int index = getIndex(entry.hash);
         Entry<K, V> current = table[index];
         Entry<K, V> prevEntry = null;
 
@@ -175,10 +302,10 @@ public class LinkedHashMap<K, V> extends AbstractMap<K, V> {
                     prevEntry.next = current.next;
                 }
 
-                current.next.prev = current.prev;
-                current.prev.next = current.next;
+                unlinkOrder(current);
 
                 size--;
+                modCount++;
                 return;
             }
 
@@ -187,22 +314,217 @@ public class LinkedHashMap<K, V> extends AbstractMap<K, V> {
         }
     }
 
+    // Starts counting resizes, reporting each one to the listener if it is non-null
+    public void enableStats(HashTableStats.Listener listener) {
+        stats = new HashTableStats.Recorder(listener);
+    }
+
+    public void disableStats() {
+        stats = null;
+    }
+
+    // Scans the table, O(capacity)
+    public HashTableStats stats() {
+        HashTableStats.Builder builder = new HashTableStats.Builder();
+        for (Entry<K, V> head : table) {
+            int length = 0;
+            for (Entry<K, V> e = head; e != null; e = e.next) {
+                length++;
+            }
+            builder.bucket(length);
+        }
+
+        // Entries carry the cached hash plus key, value, next, before and after; the header is
+        // one more entry
+        long entryBytes = HashTableStats.align(HashTableStats.OBJECT_HEADER + 5 * HashTableStats.REFERENCE_SIZE + 4);
+        long bytes = HashTableStats.arrayBytes(table.length) + (size + 1) * entryBytes;
+        return new HashTableStats(table.length, size, builder.occupiedBuckets, builder.chainLengths,
+                builder.maxChainLength, 0, stats, bytes);
+    }
+
     private void resize() {
+        HashTableStats.Recorder recorder = stats;
+        long start = (recorder != null) ? System.nanoTime() : 0;
+        int oldCapacity = capacity;
         int newCapacity = capacity * 2;
         Entry<K, V>[] newTable = new Entry[newCapacity];
+        capacity = newCapacity;
 
-        // Rehash the entries and store them in the new hash table array
-        Entry<K, V> current = header.next;
-        while (current != header) {
-            int newIndex = getIndex(hash(current.key));
-            Entry<K, V> nextEntry = current.next;
+        // Rebuild the bucket chains from the cached hashes. Walking the order list leaves it
+        // untouched, so iteration order survives the resize.
+        for (Entry<K, V> current = header.after; current != header; current = current.after) {
+            int newIndex = getIndex(current.hash);
             current.next = newTable[newIndex];
             newTable[newIndex] = current;
-            current = nextEntry;
         }
 
         table = newTable;
+
+        if (recorder != null) {
+            recorder.resized(this, oldCapacity, newCapacity, size, System.nanoTime() - start);
+        }
     }
 
-}
+    // Iterates in order by following the after links from the header
+    private abstract class LinkedHashIterator<T> implements Iterator<T> {
+        private Entry<K, V> next = header.after;
+        private Entry<K, V> current;
+        private int expectedModCount = modCount;
+
+        @Override
+        public boolean hasNext() {
+            return next != header;
+        }
+
+        final Entry<K, V> nextEntry() {
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            Entry<K, V> e = next;
+            if (e == header) {
+                throw new NoSuchElementException();
+            }
+            current = e;
+            next = e.after;
+            return e;
+        }
 
+        // O(1): the entry is unlinked where it is, without searching the order list
+        @Override
+        public void remove() {
+            if (current == null) {
+                throw new IllegalStateException();
+            }
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            removeEntry(current);
+            current = null;
+            expectedModCount = modCount;
+        }
+    }
+
+    private final class KeyIterator extends LinkedHashIterator<K> {
+        @Override
+        public K next() {
+            return nextEntry().key;
+        }
+    }
+
+    private final class ValueIterator extends LinkedHashIterator<V> {
+        @Override
+        public V next() {
+            return nextEntry().value;
+        }
+    }
+
+    private final class EntryIterator extends LinkedHashIterator<Map.Entry<K, V>> {
+        @Override
+        public Map.Entry<K, V> next() {
+            return nextEntry();
+        }
+    }
+
+    private final class KeySet extends AbstractSet<K> {
+        @Override
+        public Iterator<K> iterator() {
+            return new KeyIterator();
+        }
+
+        @Override
+        public Spliterator<K> spliterator() {
+            return Spliterators.spliterator(this, Spliterator.ORDERED | Spliterator.DISTINCT);
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            return containsKey(o);
+        }
+
+        @Override
+        public boolean remove(Object o) {
+            Entry<K, V> entry = findEntry(hash(o), o);
+            if (entry == null) {
+                return false;
+            }
+            removeEntry(entry);
+            return true;
+        }
+
+        @Override
+        public void clear() {
+            LinkedHashMap.this.clear();
+        }
+    }
+
+    private final class Values extends AbstractCollection<V> {
+        @Override
+        public Iterator<V> iterator() {
+            return new ValueIterator();
+        }
+
+        @Override
+        public Spliterator<V> spliterator() {
+            return Spliterators.spliterator(this, Spliterator.ORDERED);
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public void clear() {
+            LinkedHashMap.this.clear();
+        }
+    }
+
+    private final class EntrySet extends AbstractSet<Map.Entry<K, V>> {
+        @Override
+        public Iterator<Map.Entry<K, V>> iterator() {
+            return new EntryIterator();
+        }
+
+        @Override
+        public Spliterator<Map.Entry<K, V>> spliterator() {
+            return Spliterators.spliterator(this, Spliterator.ORDERED | Spliterator.DISTINCT);
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        // Looks the key up without recording an access, so contains() never reorders
+        @Override
+        public boolean contains(Object o) {
+            if (!(o instanceof Map.Entry)) {
+                return false;
+            }
+            Map.Entry<?, ?> e = (Map.Entry<?, ?>) o;
+            Object key = e.getKey();
+            Entry<K, V> candidate = findEntry(hash(key), key);
+            return candidate != null && Objects.equals(candidate.value, e.getValue());
+        }
+
+        @Override
+        public boolean remove(Object o) {
+            if (!contains(o)) {
+                return false;
+            }
+            Object key = ((Map.Entry<?, ?>) o).getKey();
+            removeEntry(findEntry(hash(key), key));
+            return true;
+        }
+
+        @Override
+        public void clear() {
+            LinkedHashMap.this.clear();
+        }
+    }
+}
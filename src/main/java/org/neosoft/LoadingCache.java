@@ -0,0 +1,314 @@
+package org.neosoft;
+
+import java.util.LinkedHashSet;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+// ConcurrentCache that computes missing values with a CacheLoader.
+//
+// Loads are coalesced: while a key is being loaded, every other caller asking for it waits
+// for that load instead of starting its own, so a burst of misses costs the backend one call.
+// getAll() loads all its missing keys with a single loadAll().
+//
+// With refreshAfterWrite, a read of an entry older than that still returns the current value
+// right away, and triggers one asynchronous reload on the executor that replaces it when done.
+// A failed refresh keeps the old value and is retried by a later read.
+//
+// A load that is still running when its key is invalidated stores its result anyway.
+public class LoadingCache<K, V> implements Cache<K, V> {
+    private final ConcurrentCache<K, Loaded<V>> cache;
+    private final CacheLoader<K, V> loader;
+    private final long refreshNanos; // 0 when refresh is off
+    private final Executor executor;
+    private final LongSupplier ticker;
+
+    // Loads and refreshes in progress, by key
+    private final ConcurrentHashMap<K, CompletableFuture<V>> loading = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<K, CompletableFuture<V>> refreshing = new ConcurrentHashMap<>();
+
+    // A cached value with the time it was loaded or put, for refreshAfterWrite
+    static final class Loaded<V> {
+        final V value;
+        final long writeTime;
+
+        Loaded(V value, long writeTime) {
+            this.value = value;
+            this.writeTime = writeTime;
+        }
+    }
+
+    public LoadingCache(int maximumSize, CacheLoader<K, V> loader) {
+        this(maximumSize, null, loader, 0, TimeUnit.NANOSECONDS, ForkJoinPool.commonPool(), System::nanoTime);
+    }
+
+    public LoadingCache(int maximumSize, CacheLoader<K, V> loader, long refreshAfterWrite, TimeUnit unit,
+                        Executor executor) {
+        this(maximumSize, null, loader, refreshAfterWrite, unit, executor, System::nanoTime);
+    }
+
+    // refreshAfterWrite 0 disables refresh. The executor runs the refreshes; on a JVM with
+    // virtual threads, a virtual-thread-per-task executor keeps blocking loaders cheap.
+    public LoadingCache(int maximumSize, Expiry<K, V> expiry, CacheLoader<K, V> loader, long refreshAfterWrite,
+                        TimeUnit unit, Executor executor, LongSupplier ticker) {
+        this.cache = new ConcurrentCache<>(maximumSize, adapt(expiry), ticker);
+        this.loader = Objects.requireNonNull(loader);
+        this.refreshNanos = Expiry.toNanos(refreshAfterWrite, unit);
+        this.executor = Objects.requireNonNull(executor);
+        this.ticker = ticker;
+    }
+
+    // The cache stores Loaded wrappers, so the Expiry sees through them
+    private static <K, V> Expiry<K, Loaded<V>> adapt(Expiry<K, V> expiry) {
+        if (expiry == null) {
+            return null;
+        }
+        return new Expiry<K, Loaded<V>>() {
+            @Override
+            public long expireAfterCreate(K key, Loaded<V> loaded, long currentTime) {
+                return expiry.expireAfterCreate(key, loaded.value, currentTime);
+            }
+
+            @Override
+            public long expireAfterUpdate(K key, Loaded<V> loaded, long currentTime, long currentDuration) {
+                return expiry.expireAfterUpdate(key, loaded.value, currentTime, currentDuration);
+            }
+
+            @Override
+            public long expireAfterRead(K key, Loaded<V> loaded, long currentTime, long currentDuration) {
+                return expiry.expireAfterRead(key, loaded.value, currentTime, currentDuration);
+            }
+        };
+    }
+
+    // Returns the value, loading it if absent. Returns null if the loader has no value for
+    // the key. A checked exception from the loader is rethrown wrapped in a CompletionException.
+    public V get(K key) {
+        Objects.requireNonNull(key);
+        V value = getIfPresent(key);
+        if (value != null) {
+            return value;
+        }
+
+        CompletableFuture<V> future = new CompletableFuture<>();
+        CompletableFuture<V> running = loading.putIfAbsent(key, future);
+        if (running != null) {
+            return join(running);
+        }
+        try {
+            // Another caller's load may have finished between the miss and the claim
+            Loaded<V> loaded = cache.peek(key);
+            if (loaded != null) {
+                value = loaded.value;
+            } else {
+                value = timedLoad(key);
+                if (value != null) {
+                    cache.put(key, new Loaded<>(value, ticker.getAsLong()));
+                }
+            }
+            future.complete(value);
+            return value;
+        } catch (Throwable e) {
+            future.completeExceptionally(e);
+            throw rethrow(e);
+        } finally {
+            loading.compute(key, (k, current) -> (current == future) ? null : current);
+        }
+    }
+
+    // Returns the values of all keys that have one, loading the missing keys with one
+    // loadAll() call. Keys already being loaded by other callers are waited for instead.
+    public Map<K, V> getAll(Iterable<? extends K> keys) {
+        Map<K, V> result = new HashMap<>();
+        Set<K> claimed = new LinkedHashSet<>();
+        Map<K, CompletableFuture<V>> waiting = new HashMap<>();
+        Map<K, CompletableFuture<V>> futures = new HashMap<>();
+        for (K key : keys) {
+            Objects.requireNonNull(key);
+            if (result.containsKey(key) || futures.containsKey(key) || waiting.containsKey(key)) {
+                continue;
+            }
+            V value = getIfPresent(key);
+            if (value != null) {
+                result.put(key, value);
+                continue;
+            }
+            CompletableFuture<V> future = new CompletableFuture<>();
+            CompletableFuture<V> running = loading.putIfAbsent(key, future);
+            if (running != null) {
+                waiting.put(key, running);
+            } else {
+                claimed.add(key);
+                futures.put(key, future);
+            }
+        }
+
+        if (!claimed.isEmpty()) {
+            try {
+                Map<K, V> loaded;
+                StatsCounter counter = cache.statsCounter();
+                long start = System.nanoTime();
+                try {
+                    loaded = loader.loadAll(claimed);
+                } catch (Throwable e) {
+                    if (counter != null) {
+                        counter.recordLoadFailure(System.nanoTime() - start);
+                    }
+                    throw e;
+                }
+                if (counter != null) {
+                    counter.recordLoadSuccess(System.nanoTime() - start);
+                }
+                long now = ticker.getAsLong();
+                for (K key : claimed) {
+                    V value = loaded.get(key);
+                    if (value != null) {
+                        cache.put(key, new Loaded<>(value, now));
+                        result.put(key, value);
+                    }
+                    futures.get(key).complete(value);
+                }
+            } catch (Throwable e) {
+                for (K key : claimed) {
+                    futures.get(key).completeExceptionally(e);
+                }
+                throw rethrow(e);
+            } finally {
+                for (K key : claimed) {
+                    CompletableFuture<V> future = futures.get(key);
+                    loading.compute(key, (k, current) -> (current == future) ? null : current);
+                }
+            }
+        }
+
+        for (Map.Entry<K, CompletableFuture<V>> e : waiting.entrySet()) {
+            V value = join(e.getValue());
+            if (value != null) {
+                result.put(e.getKey(), value);
+            }
+        }
+        return result;
+    }
+
+    // Reloads the key asynchronously, keeping the current value until the new one is in.
+    // If the executor rejects the task, the returned future fails with its exception.
+    public CompletableFuture<V> refresh(K key) {
+        Objects.requireNonNull(key);
+        Loaded<V> current = cache.peek(key);
+        CompletableFuture<V> future = new CompletableFuture<>();
+        CompletableFuture<V> running = refreshing.putIfAbsent(key, future);
+        if (running != null) {
+            return running;
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    V value = timedLoad(key);
+                    // Only replace what the refresh started from, not a newer put or an invalidation
+                    Loaded<V> now = cache.peek(key);
+                    if (value != null && now == current) {
+                        cache.put(key, new Loaded<>(value, ticker.getAsLong()));
+                    }
+                    future.complete(value);
+                } catch (Throwable e) {
+                    future.completeExceptionally(e);
+                } finally {
+                    refreshing.compute(key, (k, f) -> (f == future) ? null : f);
+                }
+            });
+        } catch (Throwable e) {
+            // A rejected refresh must not stay registered, or the key would never refresh again
+            refreshing.compute(key, (k, f) -> (f == future) ? null : f);
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    @Override
+    public V getIfPresent(K key) {
+        Loaded<V> loaded = cache.getIfPresent(key);
+        if (loaded == null) {
+            return null;
+        }
+        if (refreshNanos > 0 && ticker.getAsLong() - loaded.writeTime >= refreshNanos && !refreshing.containsKey(key)) {
+            refresh(key);
+        }
+        return loaded.value;
+    }
+
+    @Override
+    public void put(K key, V value) {
+        Objects.requireNonNull(value);
+        cache.put(key, new Loaded<>(value, ticker.getAsLong()));
+    }
+
+    @Override
+    public void invalidate(K key) {
+        cache.invalidate(key);
+    }
+
+    @Override
+    public int size() {
+        return cache.size();
+    }
+
+    public void cleanUp() {
+        cache.cleanUp();
+    }
+
+    // Starts counting hits, misses, loads and evictions
+    public void enableStats() {
+        cache.enableStats();
+    }
+
+    public CacheStats stats() {
+        return cache.stats();
+    }
+
+    // See ConcurrentCache.setRemovalListener; refreshes report the old value as REPLACED
+    public void setRemovalListener(RemovalListener<K, V> listener, Executor executor) {
+        cache.setRemovalListener((listener == null) ? null
+                : (key, loaded, cause) -> listener.onRemoval(key, loaded.value, cause), executor);
+    }
+
+    private V timedLoad(K key) throws Exception {
+        StatsCounter counter = cache.statsCounter();
+        long start = System.nanoTime();
+        try {
+            V value = loader.load(key);
+            if (counter != null) {
+                counter.recordLoadSuccess(System.nanoTime() - start);
+            }
+            return value;
+        } catch (Exception e) {
+            if (counter != null) {
+                counter.recordLoadFailure(System.nanoTime() - start);
+            }
+            throw e;
+        }
+    }
+
+    private static <V> V join(CompletableFuture<V> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            throw rethrow(e.getCause());
+        }
+    }
+
+    // Unchecked exceptions and errors pass through unchanged, checked ones are wrapped
+    private static RuntimeException rethrow(Throwable e) {
+        if (e instanceof RuntimeException) {
+            throw (RuntimeException) e;
+        }
+        if (e instanceof Error) {
+            throw (Error) e;
+        }
+        throw new CompletionException(e);
+    }
+}
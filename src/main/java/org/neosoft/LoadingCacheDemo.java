@@ -0,0 +1,83 @@
+package org.neosoft;
+
+import java.util.Arrays;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Exercises LoadingCache against an in-process stub loader that sleeps to simulate a slow
+// backend and counts its calls: coalesced misses, a bulk getAll, and refresh-after-write.
+// Run with: java org.neosoft.LoadingCacheDemo
+public class LoadingCacheDemo {
+    public static void main(String[] args) throws Exception {
+        StubLoader loader = new StubLoader(50);
+        ExecutorService executor = Executors.newCachedThreadPool();
+        try {
+            LoadingCache<String, String> cache = new LoadingCache<>(1000, loader, 200, TimeUnit.MILLISECONDS, executor);
+
+            // 32 threads miss the same key at once
+            int threads = 32;
+            CountDownLatch start = new CountDownLatch(1);
+            CountDownLatch done = new CountDownLatch(threads);
+            for (int i = 0; i < threads; i++) {
+                executor.execute(() -> {
+                    try {
+                        start.await();
+                        cache.get("hot");
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    } finally {
+                        done.countDown();
+                    }
+                });
+            }
+            start.countDown();
+            done.await();
+            System.out.printf("%d concurrent misses -> %d load call(s)%n", threads, loader.loads.get());
+
+            Map<String, String> all = cache.getAll(Arrays.asList("a", "b", "c", "hot"));
+            System.out.printf("getAll of 4 keys -> %d entries, %d loadAll call(s)%n", all.size(), loader.bulkLoads.get());
+
+            // Past refreshAfterWrite the stale value is served while the reload runs
+            Thread.sleep(250);
+            long before = System.nanoTime();
+            String stale = cache.get("hot");
+            long micros = (System.nanoTime() - before) / 1000;
+            Thread.sleep(100);
+            System.out.printf("stale read %s in %d us, after refresh %s%n", stale, micros, cache.get("hot"));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    // Returns key@n, where n counts the loads of that key's generation
+    private static final class StubLoader implements CacheLoader<String, String> {
+        final AtomicInteger loads = new AtomicInteger();
+        final AtomicInteger bulkLoads = new AtomicInteger();
+        private final long latencyMillis;
+
+        StubLoader(long latencyMillis) {
+            this.latencyMillis = latencyMillis;
+        }
+
+        @Override
+        public String load(String key) throws InterruptedException {
+            Thread.sleep(latencyMillis);
+            return key + "@" + loads.incrementAndGet();
+        }
+
+        @Override
+        public Map<String, String> loadAll(Set<? extends String> keys) throws InterruptedException {
+            bulkLoads.incrementAndGet();
+            Thread.sleep(latencyMillis);
+            Map<String, String> result = new HashMap<>();
+            for (String key : keys) {
+                result.put(key, key + "@bulk");
+            }
+            return result;
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package org.neosoft;
+
+import java.util.Arrays;
+import java.util.stream.LongStream;
+
+// Growable list of unboxed longs. The values sit in one long[], 8 bytes each with no
+// per-element object, where an ArrayList<Long> pays a reference plus a 24 byte Long.
+// Grows like ArrayList, by 50% at a time.
+public class LongArrayList {
+    private static final int DEFAULT_CAPACITY = 10;
+    private long[] elements;
+    private int size;
+
+    public LongArrayList() {
+        this.elements = new long[DEFAULT_CAPACITY];
+        this.size = 0;
+    }
+
+    public LongArrayList(int initialCapacity) {
+        if (initialCapacity < 0)
+            throw new IllegalArgumentException("Illegal Capacity: " + initialCapacity);
+        this.elements = new long[initialCapacity];
+        this.size = 0;
+    }
+
+    public LongArrayList(long[] values) {
+        this.elements = Arrays.copyOf(values, Math.max(values.length, DEFAULT_CAPACITY));
+        this.size = values.length;
+    }
+
+    public void ensureCapacity(int minCapacity) {
+        if (minCapacity - elements.length > 0)
+            grow(minCapacity);
+    }
+
+    private void grow(int minCapacity) {
+        int oldCapacity = elements.length;
+        int newCapacity = oldCapacity + (oldCapacity >> 1); // Grow by 50%
+        if (newCapacity - minCapacity < 0)
+            newCapacity = minCapacity;
+        if (newCapacity - Integer.MAX_VALUE > 0)
+            newCapacity = hugeCapacity(minCapacity);
+        elements = Arrays.copyOf(elements, newCapacity);
+    }
+
+    private int hugeCapacity(int minCapacity) {
+        if (minCapacity < 0)
+            throw new OutOfMemoryError();
+        return (minCapacity > Integer.MAX_VALUE) ? Integer.MAX_VALUE : minCapacity;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public boolean contains(long value) {
+        return indexOf(value) >= 0;
+    }
+
+    public void add(long value) {
+        ensureCapacity(size + 1);
+        elements[size++] = value;
+    }
+
+    public void add(int index, long value) {
+        if (index < 0 || index > size)
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        ensureCapacity(size + 1);
+        System.arraycopy(elements, index, elements, index + 1, size - index);
+        elements[index] = value;
+        size++;
+    }
+
+    // Grows at most once and copies the values in one go
+    public void addAll(long[] values) {
+        addAll(values, 0, values.length);
+    }
+
+    public void addAll(long[] values, int offset, int length) {
+        if (offset < 0 || length < 0 || offset > values.length - length)
+            throw new IndexOutOfBoundsException("Offset: " + offset + ", Length: " + length + ", Array: " + values.length);
+        ensureCapacity(size + length);
+        System.arraycopy(values, offset, elements, size, length);
+        size += length;
+    }
+
+    public long get(int index) {
+        if (index < 0 || index >= size)
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        return elements[index];
+    }
+
+    public long set(int index, long value) {
+        if (index < 0 || index >= size)
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        long oldValue = elements[index];
+        elements[index] = value;
+        return oldValue;
+    }
+
+    // Removes by position; the name keeps it apart from removing a value
+    public long removeAt(int index) {
+        if (index < 0 || index >= size)
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        long oldValue = elements[index];
+        int numMoved = size - index - 1;
+        if (numMoved > 0)
+            System.arraycopy(elements, index + 1, elements, index, numMoved);
+        size--;
+        return oldValue;
+    }
+
+    public int indexOf(long value) {
+        for (int i = 0; i < size; i++)
+            if (elements[i] == value)
+                return i;
+        return -1;
+    }
+
+    public int lastIndexOf(long value) {
+        for (int i = size - 1; i >= 0; i--)
+            if (elements[i] == value)
+                return i;
+        return -1;
+    }
+
+    public void clear() {
+        size = 0;
+    }
+
+    public void sort() {
+        Arrays.sort(elements, 0, size);
+    }
+
+    // The list must be sorted. Returns the index of the value, or (-(insertion point) - 1).
+    public int binarySearch(long value) {
+        return Arrays.binarySearch(elements, 0, size, value);
+    }
+
+    public long[] toArray() {
+        return Arrays.copyOf(elements, size);
+    }
+
+    // Streams the values without boxing. The list must not change while the stream runs.
+    public LongStream stream() {
+        return Arrays.stream(elements, 0, size);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("[");
+        for (int i = 0; i < size; i++) {
+            if (i > 0)
+                sb.append(", ");
+            sb.append(elements[i]);
+        }
+        return sb.append(']').toString();
+    }
+}
@@ -0,0 +1,249 @@
+package org.neosoft;
+
+// long -> long map without boxing, following the method shapes of org.neosoft.Map.
+// Uses the same flat-array linear probing as OpenHashMap. Key 0 marks a free slot,
+// so a mapping for key 0 is kept outside the table. Methods that would return null
+// in org.neosoft.Map return 0 when there is no mapping.
+public class LongLongHashMap {
+    private static final int DEFAULT_CAPACITY = 16;
+    private static final float DEFAULT_LOAD_FACTOR = 0.75f;
+
+    private long[] keys;
+    private long[] values;
+    private int size;
+    private int mask;
+    private int threshold;
+    private final float loadFactor;
+
+    private boolean hasZeroKey;
+    private long zeroValue;
+
+    // Receives each mapping from forEach
+    public interface EntryConsumer {
+        void accept(long key, long value);
+    }
+
+    // Folds the 64-bit key into a well-mixed int, the long counterpart of OpenHashMap.spread
+    static int spread(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    public LongLongHashMap() {
+        this(DEFAULT_CAPACITY, DEFAULT_LOAD_FACTOR);
+    }
+
+    public LongLongHashMap(int initialCapacity) {
+        this(initialCapacity, DEFAULT_LOAD_FACTOR);
+    }
+
+    public LongLongHashMap(int initialCapacity, float loadFactor) {
+        if (initialCapacity <= 0) {
+            throw new IllegalArgumentException("Invalid initial capacity: " + initialCapacity);
+        }
+        if (loadFactor <= 0 || loadFactor >= 1 || Float.isNaN(loadFactor)) {
+            throw new IllegalArgumentException("Invalid load factor: " + loadFactor);
+        }
+        this.loadFactor = loadFactor;
+        allocate(OpenHashMap.tableSizeFor((int) Math.ceil(initialCapacity / loadFactor)));
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        values = new long[capacity];
+        mask = capacity - 1;
+        threshold = Math.min((int) (capacity * loadFactor), capacity - 1);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    // Returns the slot holding the non-zero key, or -1 if it is absent
+    private int findSlot(long key) {
+        long[] ks = keys;
+        int m = mask;
+        int i = spread(key) & m;
+        long cur;
+        while ((cur = ks[i]) != 0) {
+            if (cur == key) {
+                return i;
+            }
+            i = (i + 1) & m;
+        }
+        return -1;
+    }
+
+    // Returns the slot holding the non-zero key, claiming a free slot for it if it is absent
+    private int insertSlot(long key) {
+        long[] ks = keys;
+        int m = mask;
+        int i = spread(key) & m;
+        long cur;
+        while ((cur = ks[i]) != 0) {
+            if (cur == key) {
+                return i;
+            }
+            i = (i + 1) & m;
+        }
+        ks[i] = key;
+        size++;
+        return ~i; // Negative marks a new slot
+    }
+
+    public long get(long key) {
+        return getOrDefault(key, 0);
+    }
+
+    public long getOrDefault(long key, long defaultValue) {
+        if (key == 0) {
+            return hasZeroKey ? zeroValue : defaultValue;
+        }
+        int slot = findSlot(key);
+        return (slot < 0) ? defaultValue : values[slot];
+    }
+
+    public boolean containsKey(long key) {
+        return (key == 0) ? hasZeroKey : findSlot(key) >= 0;
+    }
+
+    // Associates the value with the key and returns the previous value, or 0
+    public long put(long key, long value) {
+        if (key == 0) {
+            long oldValue = zeroValue;
+            if (!hasZeroKey) {
+                hasZeroKey = true;
+                size++;
+            }
+            zeroValue = value;
+            return oldValue;
+        }
+        int slot = insertSlot(key);
+        if (slot >= 0) {
+            long oldValue = values[slot];
+            values[slot] = value;
+            return oldValue;
+        }
+        values[~slot] = value;
+        if (size > threshold) {
+            resize();
+        }
+        return 0;
+    }
+
+    // Adds increment to the value mapped to the key (0 when absent) and returns the previous value
+    public long addTo(long key, long increment) {
+        if (key == 0) {
+            long oldValue = zeroValue;
+            if (!hasZeroKey) {
+                hasZeroKey = true;
+                size++;
+            }
+            zeroValue = oldValue + increment;
+            return oldValue;
+        }
+        int slot = insertSlot(key);
+        if (slot >= 0) {
+            long oldValue = values[slot];
+            values[slot] = oldValue + increment;
+            return oldValue;
+        }
+        values[~slot] = increment;
+        if (size > threshold) {
+            resize();
+        }
+        return 0;
+    }
+
+    // Removes the mapping for the key and returns its value, or 0
+    public long remove(long key) {
+        if (key == 0) {
+            if (!hasZeroKey) {
+                return 0;
+            }
+            long oldValue = zeroValue;
+            hasZeroKey = false;
+            zeroValue = 0;
+            size--;
+            return oldValue;
+        }
+        int slot = findSlot(key);
+        if (slot < 0) {
+            return 0;
+        }
+        long oldValue = values[slot];
+        removeAt(slot);
+        return oldValue;
+    }
+
+    // Backward-shift deletion, see OpenHashMap.removeAt
+    private void removeAt(int gap) {
+        long[] ks = keys;
+        long[] vs = values;
+        int m = mask;
+        int i = (gap + 1) & m;
+        long k;
+        while ((k = ks[i]) != 0) {
+            int home = spread(k) & m;
+            if (((i - home) & m) >= ((i - gap) & m)) {
+                ks[gap] = k;
+                vs[gap] = vs[i];
+                gap = i;
+            }
+            i = (i + 1) & m;
+        }
+        ks[gap] = 0;
+        vs[gap] = 0;
+        size--;
+    }
+
+    private void resize() {
+        long[] oldKeys = keys;
+        long[] oldValues = values;
+        if (oldKeys.length == OpenHashMap.MAXIMUM_CAPACITY) {
+            throw new IllegalStateException("Map too big");
+        }
+        allocate(oldKeys.length << 1);
+
+        long[] ks = keys;
+        int m = mask;
+        for (int j = 0; j < oldKeys.length; j++) {
+            long k = oldKeys[j];
+            if (k != 0) {
+                int i = spread(k) & m;
+                while (ks[i] != 0) {
+                    i = (i + 1) & m;
+                }
+                ks[i] = k;
+                values[i] = oldValues[j];
+            }
+        }
+    }
+
+    public void clear() {
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = 0;
+            values[i] = 0;
+        }
+        hasZeroKey = false;
+        zeroValue = 0;
+        size = 0;
+    }
+
+    public void forEach(EntryConsumer action) {
+        if (hasZeroKey) {
+            action.accept(0, zeroValue);
+        }
+        long[] ks = keys;
+        long[] vs = values;
+        for (int i = 0; i < ks.length; i++) {
+            if (ks[i] != 0) {
+                action.accept(ks[i], vs[i]);
+            }
+        }
+    }
+}
@@ -1,7 +1,11 @@
 package org.neosoft;
 
 import java.util.Collection;
+import java.util.Objects;
 import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.Function;
 
 public interface Map<K, V> {
     // Returns the number of key-value mappings in this map.
@@ -34,6 +38,77 @@ public interface Map<K, V> {
     // Returns a Set view of the mappings contained in this map.
     Set<Entry<K, V>> entrySet();
 
+    // *** Compound operations ***
+    // The defaults are built from get/put/remove. Implementations should override them
+    // so that each call looks the key up only once.
+
+    // Returns the value mapped to the key, or defaultValue if there is no mapping.
+    default V getOrDefault(K key, V defaultValue) {
+        V value = get(key);
+        return (value != null || containsKey(key)) ? value : defaultValue;
+    }
+
+    // Maps the key to the value unless it already has a non-null value, which is returned.
+    default V putIfAbsent(K key, V value) {
+        V current = get(key);
+        return (current != null) ? current : put(key, value);
+    }
+
+    // Returns the key's non-null value, or stores and returns the function's result if it is not null.
+    default V computeIfAbsent(K key, Function<? super K, ? extends V> mappingFunction) {
+        Objects.requireNonNull(mappingFunction);
+        V current = get(key);
+        if (current == null) {
+            current = mappingFunction.apply(key);
+            if (current != null) {
+                put(key, current);
+            }
+        }
+        return current;
+    }
+
+    // Replaces the key's value with the function's result; a null result removes the mapping.
+    default V compute(K key, BiFunction<? super K, ? super V, ? extends V> remappingFunction) {
+        Objects.requireNonNull(remappingFunction);
+        V value = remappingFunction.apply(key, get(key));
+        if (value != null) {
+            put(key, value);
+        } else {
+            remove(key);
+        }
+        return value;
+    }
+
+    // Stores the value if the key has none, otherwise combines both with the function;
+    // a null result removes the mapping.
+    default V merge(K key, V value, BiFunction<? super V, ? super V, ? extends V> remappingFunction) {
+        Objects.requireNonNull(value);
+        Objects.requireNonNull(remappingFunction);
+        V current = get(key);
+        V merged = (current == null) ? value : remappingFunction.apply(current, value);
+        if (merged != null) {
+            put(key, merged);
+        } else {
+            remove(key);
+        }
+        return merged;
+    }
+
+    // Copies all of the mappings from the given map into this map.
+    default void putAll(Map<? extends K, ? extends V> m) {
+        for (Entry<? extends K, ? extends V> e : m.entrySet()) {
+            put(e.getKey(), e.getValue());
+        }
+    }
+
+    // Performs the action for each mapping in this map.
+    default void forEach(BiConsumer<? super K, ? super V> action) {
+        Objects.requireNonNull(action);
+        for (Entry<K, V> e : entrySet()) {
+            action.accept(e.getKey(), e.getValue());
+        }
+    }
+
     // Represents an entry in the map, containing a key-value pair.
     interface Entry<K, V> {
         // Returns the key corresponding to this entry.
@@ -0,0 +1,376 @@
+package org.neosoft;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+// Map from byte[] / ByteBuffer keys to byte[] / ByteBuffer values whose records live outside
+// the Java heap, in direct or memory-mapped ByteBuffer slabs. The heap only holds a compact
+// open-addressing index of record addresses and hashes (12 bytes per slot).
+//
+// Records are appended and never moved, so the ByteBuffer views returned by get, put and
+// remove stay valid until compact() or clear(). Space of replaced and removed records is
+// reclaimed by compact().
+public class OffHeapHashMap {
+    private static final int DEFAULT_SLAB_SIZE = 64 << 20;
+    private static final int DEFAULT_CAPACITY = 1024;
+    private static final float LOAD_FACTOR = 0.75f;
+    // Record layout: key length, value length, key bytes, value bytes
+    private static final int HEADER_SIZE = 8;
+
+    private final int slabSize;
+    private final Path directory; // null for direct buffers
+    private final List<ByteBuffer> slabs = new ArrayList<>();
+    private ByteBuffer current; // Slab that new records are appended to
+    private int currentSlab = -1;
+    private int writeOffset;
+    private final List<Path> slabPaths = new ArrayList<>(); // Files of the slabs, in directory mode
+
+    // Index slot: (slab + 1) << 32 | offset of the record, 0 for a free slot
+    private long[] addresses;
+    private int[] hashes;
+    private int size;
+    private int mask;
+    private int threshold;
+
+    private long liveBytes;
+    private long garbageBytes;
+
+    public OffHeapHashMap() {
+        this(DEFAULT_CAPACITY, DEFAULT_SLAB_SIZE, null);
+    }
+
+    public OffHeapHashMap(int initialCapacity, int slabSize) {
+        this(initialCapacity, slabSize, null);
+    }
+
+    // With a directory, each slab is a memory-mapped file in it instead of a direct buffer.
+    // Slab files get unique names, so several maps, or leftovers of an earlier run, can share
+    // the directory without touching each other's files.
+    public OffHeapHashMap(int initialCapacity, int slabSize, Path directory) {
+        if (initialCapacity <= 0) {
+            throw new IllegalArgumentException("Invalid initial capacity: " + initialCapacity);
+        }
+        if (slabSize < HEADER_SIZE) {
+            throw new IllegalArgumentException("Invalid slab size: " + slabSize);
+        }
+        this.slabSize = slabSize;
+        this.directory = directory;
+        allocateIndex(OpenHashMap.tableSizeFor((int) Math.ceil(initialCapacity / LOAD_FACTOR)));
+    }
+
+    private void allocateIndex(int capacity) {
+        addresses = new long[capacity];
+        hashes = new int[capacity];
+        mask = capacity - 1;
+        threshold = Math.min((int) (capacity * LOAD_FACTOR), capacity - 1);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    // Bytes held by live records, and by replaced or removed records awaiting compact()
+    public long liveBytes() {
+        return liveBytes;
+    }
+
+    public long garbageBytes() {
+        return garbageBytes;
+    }
+
+    // *** byte[] API, copies in and out of the slabs ***
+
+    public byte[] get(byte[] key) {
+        return toArray(get(ByteBuffer.wrap(key)));
+    }
+
+    public byte[] put(byte[] key, byte[] value) {
+        return toArray(put(ByteBuffer.wrap(key), ByteBuffer.wrap(value)));
+    }
+
+    public byte[] remove(byte[] key) {
+        return toArray(remove(ByteBuffer.wrap(key)));
+    }
+
+    public boolean containsKey(byte[] key) {
+        return findSlot(ByteBuffer.wrap(key)) >= 0;
+    }
+
+    private static byte[] toArray(ByteBuffer buffer) {
+        if (buffer == null) {
+            return null;
+        }
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        return bytes;
+    }
+
+    // *** ByteBuffer API: keys and values are the bytes between position and limit, which
+    // are left untouched. Returned values are read-only views into the slab, no copy. ***
+
+    public ByteBuffer get(ByteBuffer key) {
+        int slot = findSlot(key);
+        return (slot < 0) ? null : valueView(addresses[slot]);
+    }
+
+    public boolean containsKey(ByteBuffer key) {
+        return findSlot(key) >= 0;
+    }
+
+    // Stores the mapping and returns a view of the previous value, or null
+    public ByteBuffer put(ByteBuffer key, ByteBuffer value) {
+        int h = hash(key);
+        int m = mask;
+        int i = h & m;
+        long address;
+        while ((address = addresses[i]) != 0) {
+            if (hashes[i] == h && keyEquals(key, address)) {
+                ByteBuffer oldValue = valueView(address);
+                garbageBytes += recordSize(address);
+                liveBytes -= recordSize(address);
+                addresses[i] = append(key, value);
+                return oldValue;
+            }
+            i = (i + 1) & m;
+        }
+
+        addresses[i] = append(key, value);
+        hashes[i] = h;
+        if (++size > threshold) {
+            resizeIndex();
+        }
+        return null;
+    }
+
+    // Removes the mapping and returns a view of its value, or null
+    public ByteBuffer remove(ByteBuffer key) {
+        int slot = findSlot(key);
+        if (slot < 0) {
+            return null;
+        }
+        long address = addresses[slot];
+        garbageBytes += recordSize(address);
+        liveBytes -= recordSize(address);
+        removeAt(slot);
+        return valueView(address);
+    }
+
+    public void clear() {
+        for (int i = 0; i < addresses.length; i++) {
+            addresses[i] = 0;
+        }
+        size = 0;
+        liveBytes = 0;
+        garbageBytes = 0;
+        slabs.clear();
+        current = null;
+        currentSlab = -1;
+        deleteSlabFiles(new ArrayList<>(slabPaths));
+        slabPaths.clear();
+    }
+
+    // Copies the live records into fresh slabs and drops the old ones.
+    // Views handed out before the call must not be used afterwards.
+    public void compact() {
+        List<ByteBuffer> oldSlabs = new ArrayList<>(slabs);
+        List<Path> oldPaths = new ArrayList<>(slabPaths);
+        slabs.clear();
+        slabPaths.clear();
+        current = null;
+        currentSlab = -1;
+        liveBytes = 0;
+        garbageBytes = 0;
+        for (int i = 0; i < addresses.length; i++) {
+            long address = addresses[i];
+            if (address != 0) {
+                ByteBuffer slab = oldSlabs.get(slabOf(address));
+                int offset = offsetOf(address);
+                addresses[i] = append(slice(slab, offset + HEADER_SIZE, slab.getInt(offset)),
+                        slice(slab, offset + HEADER_SIZE + slab.getInt(offset), slab.getInt(offset + 4)));
+            }
+        }
+        deleteSlabFiles(oldPaths);
+    }
+
+    // The disk space comes back once the old mappings are garbage collected. Where a mapped
+    // file cannot be deleted (Windows), it is deleted when the JVM exits instead.
+    private static void deleteSlabFiles(List<Path> files) {
+        for (Path file : files) {
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException e) {
+                file.toFile().deleteOnExit();
+            }
+        }
+    }
+
+    private int findSlot(ByteBuffer key) {
+        int h = hash(key);
+        int m = mask;
+        int i = h & m;
+        long address;
+        while ((address = addresses[i]) != 0) {
+            if (hashes[i] == h && keyEquals(key, address)) {
+                return i;
+            }
+            i = (i + 1) & m;
+        }
+        return -1;
+    }
+
+    // Backward-shift deletion as in OpenHashMap, using the stored hashes
+    private void removeAt(int gap) {
+        int m = mask;
+        int i = (gap + 1) & m;
+        long address;
+        while ((address = addresses[i]) != 0) {
+            int home = hashes[i] & m;
+            if (((i - home) & m) >= ((i - gap) & m)) {
+                addresses[gap] = address;
+                hashes[gap] = hashes[i];
+                gap = i;
+            }
+            i = (i + 1) & m;
+        }
+        addresses[gap] = 0;
+        size--;
+    }
+
+    // Rebuilt from the stored hashes alone, the slabs are not read
+    private void resizeIndex() {
+        long[] oldAddresses = addresses;
+        int[] oldHashes = hashes;
+        if (oldAddresses.length == OpenHashMap.MAXIMUM_CAPACITY) {
+            throw new IllegalStateException("Map too big");
+        }
+        allocateIndex(oldAddresses.length << 1);
+        int m = mask;
+        for (int j = 0; j < oldAddresses.length; j++) {
+            if (oldAddresses[j] != 0) {
+                int i = oldHashes[j] & m;
+                while (addresses[i] != 0) {
+                    i = (i + 1) & m;
+                }
+                addresses[i] = oldAddresses[j];
+                hashes[i] = oldHashes[j];
+            }
+        }
+    }
+
+    private static int hash(ByteBuffer key) {
+        int h = 1;
+        for (int i = key.position(), end = key.limit(); i < end; i++) {
+            h = 31 * h + key.get(i);
+        }
+        return OpenHashMap.spread(h);
+    }
+
+    private boolean keyEquals(ByteBuffer key, long address) {
+        ByteBuffer slab = slabs.get(slabOf(address));
+        int offset = offsetOf(address);
+        int length = key.remaining();
+        if (slab.getInt(offset) != length) {
+            return false;
+        }
+        int from = offset + HEADER_SIZE;
+        int p = key.position();
+        for (int i = 0; i < length; i++) {
+            if (slab.get(from + i) != key.get(p + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Writes a record to the current slab, opening a new one when it does not fit
+    private long append(ByteBuffer key, ByteBuffer value) {
+        int keyLength = key.remaining();
+        int valueLength = value.remaining();
+        long recordSize = (long) HEADER_SIZE + keyLength + valueLength;
+        if (recordSize > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Record too large: " + recordSize + " bytes");
+        }
+        if (current == null || writeOffset + recordSize > current.capacity()) {
+            // Oversized records get a slab of their own
+            newSlab((int) Math.max(slabSize, recordSize));
+        }
+
+        int offset = writeOffset;
+        ByteBuffer out = current.duplicate();
+        out.position(offset);
+        out.putInt(keyLength);
+        out.putInt(valueLength);
+        out.put(key.duplicate());
+        out.put(value.duplicate());
+        writeOffset = out.position();
+        liveBytes += recordSize;
+        return ((long) (currentSlab + 1) << 32) | offset;
+    }
+
+    private void newSlab(int capacity) {
+        ByteBuffer slab;
+        if (directory == null) {
+            slab = ByteBuffer.allocateDirect(capacity);
+        } else {
+            // A new file every time: compact() still reads the old slabs while writing new ones
+            Path file;
+            try {
+                file = Files.createTempFile(directory, "slab-", ".bin");
+            } catch (IOException e) {
+                throw new UncheckedIOException("Cannot create slab in " + directory, e);
+            }
+            try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "rw")) {
+                raf.setLength(capacity);
+                // The mapping stays valid after the file is closed
+                slab = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+            } catch (IOException e) {
+                deleteSlabFiles(Collections.singletonList(file));
+                throw new UncheckedIOException("Cannot map slab " + file, e);
+            }
+            slabPaths.add(file);
+        }
+        slabs.add(slab);
+        current = slab;
+        currentSlab = slabs.size() - 1;
+        writeOffset = 0;
+    }
+
+    private ByteBuffer valueView(long address) {
+        ByteBuffer slab = slabs.get(slabOf(address));
+        int offset = offsetOf(address);
+        return slice(slab, offset + HEADER_SIZE + slab.getInt(offset), slab.getInt(offset + 4)).asReadOnlyBuffer();
+    }
+
+    private int recordSize(long address) {
+        ByteBuffer slab = slabs.get(slabOf(address));
+        int offset = offsetOf(address);
+        return HEADER_SIZE + slab.getInt(offset) + slab.getInt(offset + 4);
+    }
+
+    private static ByteBuffer slice(ByteBuffer slab, int from, int length) {
+        ByteBuffer view = slab.duplicate();
+        view.limit(from + length);
+        view.position(from);
+        return view.slice();
+    }
+
+    private static int slabOf(long address) {
+        return (int) (address >>> 32) - 1;
+    }
+
+    private static int offsetOf(long address) {
+        return (int) address;
+    }
+}
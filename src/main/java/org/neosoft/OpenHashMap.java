@@ -0,0 +1,417 @@
+package org.neosoft;
+
+import java.util.AbstractCollection;
+import java.util.AbstractSet;
+import java.util.Collection;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+
+// Open-addressing variant of HashMap: keys and values live in two flat arrays,
+// the table size is always a power of two and collisions are resolved by linear probing.
+public class OpenHashMap<K, V> implements Map<K, V> {
+    private static final int DEFAULT_CAPACITY = 16;
+    private static final float DEFAULT_LOAD_FACTOR = 0.75f;
+    static final int MAXIMUM_CAPACITY = 1 << 30;
+
+    // Stands in for a null key, since a null slot marks an empty bucket
+    private static final Object NULL_KEY = new Object();
+
+    private Object[] keys;
+    private Object[] values;
+    private int size;
+    private int mask;
+    private int threshold;
+    private final float loadFactor;
+    private int modCount; // Structural changes, checked by the iterators
+
+    public OpenHashMap() {
+        this(DEFAULT_CAPACITY, DEFAULT_LOAD_FACTOR);
+    }
+
+    public OpenHashMap(int initialCapacity) {
+        this(initialCapacity, DEFAULT_LOAD_FACTOR);
+    }
+
+    public OpenHashMap(int initialCapacity, float loadFactor) {
+        if (initialCapacity <= 0) {
+            throw new IllegalArgumentException("Invalid initial capacity: " + initialCapacity);
+        }
+        // Probing needs at least one free slot, so the load factor must stay below 1
+        if (loadFactor <= 0 || loadFactor >= 1 || Float.isNaN(loadFactor)) {
+            throw new IllegalArgumentException("Invalid load factor: " + loadFactor);
+        }
+        this.loadFactor = loadFactor;
+        allocate(tableSizeFor((int) Math.ceil(initialCapacity / loadFactor)));
+    }
+
+    // Smallest power of two that is >= cap
+    static int tableSizeFor(int cap) {
+        int n = -1 >>> Integer.numberOfLeadingZeros(Math.max(cap, 2) - 1);
+        return (n >= MAXIMUM_CAPACITY) ? MAXIMUM_CAPACITY : n + 1;
+    }
+
+    // Fibonacci multiply followed by an xor-shift, so that the low bits used by the mask
+    // depend on every bit of hashCode()
+    static int spread(int h) {
+        h *= 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    private static Object maskNull(Object key) {
+        return (key == null) ? NULL_KEY : key;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <K> K unmaskNull(Object key) {
+        return (key == NULL_KEY) ? null : (K) key;
+    }
+
+    private void allocate(int capacity) {
+        keys = new Object[capacity];
+        values = new Object[capacity];
+        mask = capacity - 1;
+        threshold = Math.min((int) (capacity * loadFactor), capacity - 1);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    // Returns the slot holding the key, or -1 when the probe reaches an empty slot first
+    private int findSlot(Object key) {
+        Object k = maskNull(key);
+        Object[] ks = keys;
+        int m = mask;
+        int i = spread(k.hashCode()) & m;
+        Object cur;
+        while ((cur = ks[i]) != null) {
+            if (cur == k || cur.equals(k)) {
+                return i;
+            }
+            i = (i + 1) & m;
+        }
+        return -1;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public V put(K key, V value) {
+        Object k = maskNull(key);
+        Object[] ks = keys;
+        int m = mask;
+        int i = spread(k.hashCode()) & m;
+        Object cur;
+        while ((cur = ks[i]) != null) {
+            if (cur == k || cur.equals(k)) {
+                V oldValue = (V) values[i];
+                values[i] = value;
+                return oldValue;
+            }
+            i = (i + 1) & m;
+        }
+
+        // Key not found, claim the empty slot that ended the probe
+        modCount++;
+        ks[i] = k;
+        values[i] = value;
+        if (++size > threshold) {
+            resize();
+        }
+        return null;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public V get(K key) {
+        int slot = findSlot(key);
+        return (slot < 0) ? null : (V) values[slot];
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public V remove(K key) {
+        int slot = findSlot(key);
+        if (slot < 0) {
+            return null;
+        }
+        V removedValue = (V) values[slot];
+        removeAt(slot);
+        return removedValue;
+    }
+
+    // Backward-shift deletion: pull later members of the probe run into the gap so that
+    // no tombstones are needed and lookups still stop at the first empty slot
+    private void removeAt(int gap) {
+        Object[] ks = keys;
+        Object[] vs = values;
+        int m = mask;
+        int i = (gap + 1) & m;
+        Object k;
+        while ((k = ks[i]) != null) {
+            int home = spread(k.hashCode()) & m;
+            // The entry may move into the gap only if its home slot is not between gap and i
+            if (((i - home) & m) >= ((i - gap) & m)) {
+                ks[gap] = k;
+                vs[gap] = vs[i];
+                gap = i;
+            }
+            i = (i + 1) & m;
+        }
+        ks[gap] = null;
+        vs[gap] = null;
+        size--;
+        modCount++;
+    }
+
+    private void resize() {
+        Object[] oldKeys = keys;
+        Object[] oldValues = values;
+        if (oldKeys.length == MAXIMUM_CAPACITY) {
+            throw new IllegalStateException("Map too big");
+        }
+        allocate(oldKeys.length << 1);
+
+        // Reinsert every live entry; the new table has no duplicates so no equals() is needed
+        Object[] ks = keys;
+        int m = mask;
+        for (int j = 0; j < oldKeys.length; j++) {
+            Object k = oldKeys[j];
+            if (k != null) {
+                int i = spread(k.hashCode()) & m;
+                while (ks[i] != null) {
+                    i = (i + 1) & m;
+                }
+                ks[i] = k;
+                values[i] = oldValues[j];
+            }
+        }
+    }
+
+    @Override
+    public boolean containsKey(K key) {
+        return findSlot(key) >= 0;
+    }
+
+    @Override
+    public void clear() {
+        modCount++;
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = null;
+            values[i] = null;
+        }
+        size = 0;
+    }
+
+    @Override
+    public Set<K> keySet() {
+        return new KeySet();
+    }
+
+    @Override
+    public Collection<V> values() {
+        return new Values();
+    }
+
+    @Override
+    public Set<Map.Entry<K, V>> entrySet() {
+        return new EntrySet();
+    }
+
+    // Walks the table downwards starting just below an empty slot. Backward shifts only move
+    // entries towards lower slots inside a run, so removing through the iterator can only
+    // move entries that were already visited and never skips or repeats one. Any other change
+    // to the map during iteration is reported as ConcurrentModificationException.
+    private abstract class SlotIterator<T> implements Iterator<T> {
+        private final int start;
+        private int slot;
+        private int remaining = size;
+        private int lastReturned = -1;
+        private int expectedModCount = modCount;
+
+        SlotIterator() {
+            int s = mask;
+            while (keys[s] != null) {
+                s--;
+            }
+            start = s;
+            slot = s;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return remaining > 0;
+        }
+
+        int nextSlot() {
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            if (remaining <= 0) {
+                throw new NoSuchElementException();
+            }
+            do {
+                slot = (slot - 1) & mask;
+            } while (keys[slot] == null && slot != start);
+            remaining--;
+            return lastReturned = slot;
+        }
+
+        @Override
+        public void remove() {
+            if (lastReturned < 0) {
+                throw new IllegalStateException();
+            }
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            removeAt(lastReturned);
+            lastReturned = -1;
+            expectedModCount = modCount;
+        }
+    }
+
+    private final class KeyIterator extends SlotIterator<K> {
+        @Override
+        public K next() {
+            return unmaskNull(keys[nextSlot()]);
+        }
+    }
+
+    private final class ValueIterator extends SlotIterator<V> {
+        @Override
+        @SuppressWarnings("unchecked")
+        public V next() {
+            return (V) values[nextSlot()];
+        }
+    }
+
+    private final class EntryIterator extends SlotIterator<Map.Entry<K, V>> {
+        @Override
+        @SuppressWarnings("unchecked")
+        public Map.Entry<K, V> next() {
+            int s = nextSlot();
+            return new SimpleEntry<>(OpenHashMap.this, OpenHashMap.<K>unmaskNull(keys[s]), (V) values[s]);
+        }
+    }
+
+    private final class KeySet extends AbstractSet<K> {
+        @Override
+        public Iterator<K> iterator() {
+            return new KeyIterator();
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            return findSlot(o) >= 0;
+        }
+
+        @Override
+        public boolean remove(Object o) {
+            int slot = findSlot(o);
+            if (slot < 0) {
+                return false;
+            }
+            removeAt(slot);
+            return true;
+        }
+
+        @Override
+        public void clear() {
+            OpenHashMap.this.clear();
+        }
+    }
+
+    private final class Values extends AbstractCollection<V> {
+        @Override
+        public Iterator<V> iterator() {
+            return new ValueIterator();
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public void clear() {
+            OpenHashMap.this.clear();
+        }
+    }
+
+    private final class EntrySet extends AbstractSet<Map.Entry<K, V>> {
+        @Override
+        public Iterator<Map.Entry<K, V>> iterator() {
+            return new EntryIterator();
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public void clear() {
+            OpenHashMap.this.clear();
+        }
+    }
+
+    // Entries are not stored in the table, so the iterator hands out detached copies
+    // that write through to the map on setValue
+    private static final class SimpleEntry<K, V> implements Map.Entry<K, V> {
+        private final OpenHashMap<K, V> map;
+        private final K key;
+        private V value;
+
+        SimpleEntry(OpenHashMap<K, V> map, K key, V value) {
+            this.map = map;
+            this.key = key;
+            this.value = value;
+        }
+
+        @Override
+        public K getKey() {
+            return key;
+        }
+
+        @Override
+        public V getValue() {
+            return value;
+        }
+
+        @Override
+        public V setValue(V value) {
+            V oldValue = this.value;
+            this.value = value;
+            map.put(key, value);
+            return oldValue;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Map.Entry)) {
+                return false;
+            }
+            Map.Entry<?, ?> e = (Map.Entry<?, ?>) o;
+            return Objects.equals(key, e.getKey()) && Objects.equals(value, e.getValue());
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hashCode(key) ^ Objects.hashCode(value);
+        }
+    }
+}
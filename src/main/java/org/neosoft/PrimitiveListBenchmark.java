@@ -0,0 +1,132 @@
+package org.neosoft;
+
+import java.util.Collections;
+import java.util.Random;
+
+// Footprint and throughput of the primitive array lists against a boxed list. The boxed
+// baseline is java.util.ArrayList, which has the same Object[] layout as org.neosoft.ArrayList
+// but can be instantiated.
+// Run with: java org.neosoft.PrimitiveListBenchmark [elements]
+public class PrimitiveListBenchmark {
+    private static Object retained;
+    private static volatile long sink;
+
+    public static void main(String[] args) {
+        int elements = (args.length > 0) ? Integer.parseInt(args[0]) : 5_000_000;
+
+        System.out.println("Footprint");
+        report("ArrayList<Integer>", elements, measure(() -> {
+            java.util.ArrayList<Integer> list = new java.util.ArrayList<>();
+            for (int i = 0; i < elements; i++) {
+                list.add(i * 31);
+            }
+            return list;
+        }));
+        report("IntArrayList", elements, measure(() -> {
+            IntArrayList list = new IntArrayList();
+            for (int i = 0; i < elements; i++) {
+                list.add(i * 31);
+            }
+            return list;
+        }));
+        report("ArrayList<Long>", elements, measure(() -> {
+            java.util.ArrayList<Long> list = new java.util.ArrayList<>();
+            for (long i = 0; i < elements; i++) {
+                list.add(i * 31);
+            }
+            return list;
+        }));
+        report("LongArrayList", elements, measure(() -> {
+            LongArrayList list = new LongArrayList();
+            for (long i = 0; i < elements; i++) {
+                list.add(i * 31);
+            }
+            return list;
+        }));
+        report("ArrayList<Double>", elements, measure(() -> {
+            java.util.ArrayList<Double> list = new java.util.ArrayList<>();
+            for (int i = 0; i < elements; i++) {
+                list.add(i * 0.5);
+            }
+            return list;
+        }));
+        report("DoubleArrayList", elements, measure(() -> {
+            DoubleArrayList list = new DoubleArrayList();
+            for (int i = 0; i < elements; i++) {
+                list.add(i * 0.5);
+            }
+            return list;
+        }));
+
+        Random random = new Random(42);
+        java.util.ArrayList<Integer> boxed = new java.util.ArrayList<>();
+        IntArrayList primitive = new IntArrayList();
+        for (int i = 0; i < elements; i++) {
+            int value = random.nextInt();
+            boxed.add(value);
+            primitive.add(value);
+        }
+
+        System.out.println("Throughput, best of 5 runs");
+        time("ArrayList<Integer> get() sum", () -> {
+            long sum = 0;
+            for (int i = 0; i < boxed.size(); i++) {
+                sum += boxed.get(i);
+            }
+            sink = sum;
+        });
+        time("IntArrayList get() sum", () -> {
+            long sum = 0;
+            for (int i = 0; i < primitive.size(); i++) {
+                sum += primitive.get(i);
+            }
+            sink = sum;
+        });
+        time("ArrayList<Integer> stream sum", () -> sink = boxed.stream().mapToLong(Integer::longValue).sum());
+        time("IntArrayList stream sum", () -> sink = primitive.stream().asLongStream().sum());
+        time("ArrayList<Integer> sort", () -> {
+            java.util.ArrayList<Integer> copy = new java.util.ArrayList<>(boxed);
+            Collections.sort(copy);
+            sink = copy.get(0);
+        });
+        time("IntArrayList sort", () -> {
+            IntArrayList copy = new IntArrayList(primitive.toArray());
+            copy.sort();
+            sink = copy.get(0);
+        });
+    }
+
+    private interface Builder {
+        Object build();
+    }
+
+    private static long measure(Builder builder) {
+        long before = usedHeap();
+        retained = builder.build();
+        long after = usedHeap();
+        retained = null;
+        return after - before;
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 4; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static void report(String name, int elements, long bytes) {
+        System.out.printf("  %-20s %8.1f MB  %6.1f bytes/element%n", name, bytes / 1e6, (double) bytes / elements);
+    }
+
+    private static void time(String name, Runnable run) {
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < 5; i++) {
+            long start = System.nanoTime();
+            run.run();
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        System.out.printf("  %-30s %8.2f ms%n", name, best / 1e6);
+    }
+}
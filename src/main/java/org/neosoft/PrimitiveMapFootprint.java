@@ -0,0 +1,85 @@
+package org.neosoft;
+
+// Measures retained heap per mapping of the primitive maps against the boxed HashMap.
+// Run with: java org.neosoft.PrimitiveMapFootprint [entries]
+public class PrimitiveMapFootprint {
+    private static Object retained;
+
+    public static void main(String[] args) {
+        int entries = (args.length > 0) ? Integer.parseInt(args[0]) : 1_000_000;
+
+        report("HashMap<Integer, Integer>", entries, measure(() -> {
+            HashMap<Integer, Integer> map = new HashMap<>();
+            for (int i = 1; i <= entries; i++) {
+                map.put(i * 31, i);
+            }
+            return map;
+        }));
+        report("IntIntHashMap", entries, measure(() -> {
+            IntIntHashMap map = new IntIntHashMap();
+            for (int i = 1; i <= entries; i++) {
+                map.put(i * 31, i);
+            }
+            return map;
+        }));
+
+        report("HashMap<Long, Long>", entries, measure(() -> {
+            HashMap<Long, Long> map = new HashMap<>();
+            for (long i = 1; i <= entries; i++) {
+                map.put(i * 31, i);
+            }
+            return map;
+        }));
+        report("LongLongHashMap", entries, measure(() -> {
+            LongLongHashMap map = new LongLongHashMap();
+            for (long i = 1; i <= entries; i++) {
+                map.put(i * 31, i);
+            }
+            return map;
+        }));
+
+        // The values are shared by both maps so that only the map overhead is compared
+        String[] values = new String[entries + 1];
+        for (int i = 1; i <= entries; i++) {
+            values[i] = "v" + i;
+        }
+        report("HashMap<Integer, String>", entries, measure(() -> {
+            HashMap<Integer, String> map = new HashMap<>();
+            for (int i = 1; i <= entries; i++) {
+                map.put(i * 31, values[i]);
+            }
+            return map;
+        }));
+        report("IntObjectHashMap<String>", entries, measure(() -> {
+            IntObjectHashMap<String> map = new IntObjectHashMap<>();
+            for (int i = 1; i <= entries; i++) {
+                map.put(i * 31, values[i]);
+            }
+            return map;
+        }));
+    }
+
+    private interface Builder {
+        Object build();
+    }
+
+    private static long measure(Builder builder) {
+        long before = usedHeap();
+        retained = builder.build();
+        long after = usedHeap();
+        retained = null;
+        return after - before;
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 4; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static void report(String name, int entries, long bytes) {
+        System.out.printf("%-26s %8.1f MB  %6.1f bytes/entry%n", name, bytes / 1e6, (double) bytes / entries);
+    }
+}
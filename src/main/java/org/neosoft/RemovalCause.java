@@ -0,0 +1,14 @@
+package org.neosoft;
+
+// Why an entry left a cache
+public enum RemovalCause {
+    EXPLICIT, // invalidate()
+    REPLACED, // put() over an existing value
+    SIZE,     // Evicted to stay within the maximum size
+    EXPIRED;  // Outlived its Expiry
+
+    // True for removals the cache decided on, rather than the caller
+    public boolean wasEvicted() {
+        return this == SIZE || this == EXPIRED;
+    }
+}
@@ -0,0 +1,6 @@
+package org.neosoft;
+
+// Notified whenever an entry leaves a cache, with the value it held
+public interface RemovalListener<K, V> {
+    void onRemoval(K key, V value, RemovalCause cause);
+}
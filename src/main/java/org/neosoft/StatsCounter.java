@@ -0,0 +1,41 @@
+package org.neosoft;
+
+import java.util.concurrent.atomic.LongAdder;
+
+// Cache counters on LongAdders, whose striped cells keep concurrent readers from contending
+// on a single counter. snapshot() sums them into a CacheStats.
+final class StatsCounter {
+    private final LongAdder hitCount = new LongAdder();
+    private final LongAdder missCount = new LongAdder();
+    private final LongAdder loadSuccessCount = new LongAdder();
+    private final LongAdder loadFailureCount = new LongAdder();
+    private final LongAdder totalLoadTime = new LongAdder();
+    private final LongAdder evictionCount = new LongAdder();
+
+    void recordHit() {
+        hitCount.increment();
+    }
+
+    void recordMiss() {
+        missCount.increment();
+    }
+
+    void recordLoadSuccess(long nanos) {
+        loadSuccessCount.increment();
+        totalLoadTime.add(nanos);
+    }
+
+    void recordLoadFailure(long nanos) {
+        loadFailureCount.increment();
+        totalLoadTime.add(nanos);
+    }
+
+    void recordEviction() {
+        evictionCount.increment();
+    }
+
+    CacheStats snapshot() {
+        return new CacheStats(hitCount.sum(), missCount.sum(), loadSuccessCount.sum(), loadFailureCount.sum(),
+                totalLoadTime.sum(), evictionCount.sum());
+    }
+}
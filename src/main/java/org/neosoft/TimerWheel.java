@@ -0,0 +1,144 @@
+package org.neosoft;
+
+import java.util.function.Consumer;
+
+// Hierarchical timing wheel holding ConcurrentCache nodes by expiration time. Each level
+// is an array of buckets covering a power-of-two span of nanoseconds; a node goes into the
+// finest level whose range still reaches its deadline:
+//
+//   level 0   64 buckets of ~1.07 s
+//   level 1   64 buckets of ~1.14 min
+//   level 2   32 buckets of ~1.22 h
+//   level 3    4 buckets of ~1.63 d
+//   level 4    1 bucket  of ~6.52 d, for everything further out
+//
+// A level's buckets together span exactly one bucket of the next level, so a node never
+// wraps around into a bucket that comes due before its deadline.
+//
+// Scheduling is O(1): a shift and a mask find the bucket, and buckets are circular doubly
+// linked lists through the nodes themselves. When time advances, the buckets it passed are
+// emptied: due nodes expire, the rest cascade down into finer levels. Each node is touched
+// a bounded number of times, so expiry is amortized O(1). Not thread-safe; the cache only
+// uses it while holding its eviction lock. Times are non-negative nanoseconds.
+final class TimerWheel<K, V> {
+    private static final int[] BUCKETS = {64, 64, 32, 4, 1};
+    private static final long[] SPANS = {
+            1L << 30, // 1.07 s
+            1L << 36, // 1.14 min
+            1L << 42, // 1.22 h
+            1L << 47, // 1.63 d
+            1L << 49, // 6.52 d
+            1L << 49, // Upper bound of the last level, which has a single bucket
+    };
+    private static final int[] SHIFTS = new int[SPANS.length];
+
+    static {
+        for (int i = 0; i < SPANS.length; i++) {
+            SHIFTS[i] = Long.numberOfTrailingZeros(SPANS[i]);
+        }
+        for (int i = 0; i < BUCKETS.length - 1; i++) {
+            assert BUCKETS[i] * SPANS[i] == SPANS[i + 1] : "Level " + i + " does not fill the next bucket";
+        }
+    }
+
+    private final ConcurrentCache.Node<K, V>[][] wheel;
+    private long nanos;
+
+    TimerWheel(long now) {
+        this.nanos = now;
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        ConcurrentCache.Node<K, V>[][] levels = new ConcurrentCache.Node[BUCKETS.length][];
+        this.wheel = levels;
+        for (int i = 0; i < BUCKETS.length; i++) {
+            @SuppressWarnings({"unchecked", "rawtypes"})
+            ConcurrentCache.Node<K, V>[] buckets = new ConcurrentCache.Node[BUCKETS[i]];
+            wheel[i] = buckets;
+            for (int j = 0; j < BUCKETS[i]; j++) {
+                ConcurrentCache.Node<K, V> sentinel = new ConcurrentCache.Node<>(null, null);
+                sentinel.prevInWheel = sentinel;
+                sentinel.nextInWheel = sentinel;
+                wheel[i][j] = sentinel;
+            }
+        }
+    }
+
+    void schedule(ConcurrentCache.Node<K, V> node) {
+        ConcurrentCache.Node<K, V> sentinel = findBucket(node.expiresAt);
+        node.prevInWheel = sentinel.prevInWheel;
+        node.nextInWheel = sentinel;
+        sentinel.prevInWheel.nextInWheel = node;
+        sentinel.prevInWheel = node;
+    }
+
+    void reschedule(ConcurrentCache.Node<K, V> node) {
+        if (node.nextInWheel != null) {
+            unlink(node);
+            schedule(node);
+        }
+    }
+
+    void deschedule(ConcurrentCache.Node<K, V> node) {
+        if (node.nextInWheel != null) {
+            unlink(node);
+        }
+    }
+
+    // Moves the wheel to the given time, passing every node that is due to expired
+    void advance(long now, Consumer<ConcurrentCache.Node<K, V>> expired) {
+        long previous = nanos;
+        nanos = now;
+        for (int i = 0; i < BUCKETS.length; i++) {
+            long previousTicks = previous >>> SHIFTS[i];
+            long currentTicks = now >>> SHIFTS[i];
+            if (currentTicks - previousTicks <= 0) {
+                break; // Coarser levels have not ticked either
+            }
+            expire(i, previousTicks, currentTicks - previousTicks, expired);
+        }
+    }
+
+    // Empties the buckets of a level that the clock went past, from the one it was in
+    private void expire(int level, long previousTicks, long delta, Consumer<ConcurrentCache.Node<K, V>> expired) {
+        ConcurrentCache.Node<K, V>[] buckets = wheel[level];
+        int mask = buckets.length - 1;
+        int steps = (int) Math.min(1 + delta, buckets.length);
+        int start = (int) (previousTicks & mask);
+        for (int i = start; i < start + steps; i++) {
+            ConcurrentCache.Node<K, V> sentinel = buckets[i & mask];
+            ConcurrentCache.Node<K, V> node = sentinel.nextInWheel;
+            sentinel.prevInWheel = sentinel;
+            sentinel.nextInWheel = sentinel;
+            while (node != sentinel) {
+                ConcurrentCache.Node<K, V> next = node.nextInWheel;
+                node.prevInWheel = null;
+                node.nextInWheel = null;
+                if (node.expiresAt - nanos <= 0) {
+                    expired.accept(node);
+                } else {
+                    schedule(node);
+                }
+                node = next;
+            }
+        }
+    }
+
+    private ConcurrentCache.Node<K, V> findBucket(long time) {
+        long duration = time - nanos;
+        int last = BUCKETS.length - 1;
+        for (int i = 0; i < last; i++) {
+            if (duration < SPANS[i + 1]) {
+                // An overdue node goes into the current bucket, which the next tick empties
+                long ticks = Math.max(time, nanos) >>> SHIFTS[i];
+                return wheel[i][(int) (ticks & (BUCKETS[i] - 1))];
+            }
+        }
+        return wheel[last][0];
+    }
+
+    private static <K, V> void unlink(ConcurrentCache.Node<K, V> node) {
+        node.prevInWheel.nextInWheel = node.nextInWheel;
+        node.nextInWheel.prevInWheel = node.prevInWheel;
+        node.prevInWheel = null;
+        node.nextInWheel = null;
+    }
+}
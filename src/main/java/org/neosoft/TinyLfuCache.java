@@ -0,0 +1,118 @@
+package org.neosoft;
+
+import java.util.Map;
+import java.util.Objects;
+
+// W-TinyLFU cache: recency and frequency combined, so that one-off keys cannot flush the
+// hot set the way they do in plain LRU.
+//
+//   window     1% of the capacity, LRU. Every new key starts here, so bursts still hit.
+//   probation  main region entries that have not been hit since they were admitted
+//   protected  80% of the main region, entries hit again while on probation
+//
+// When the window overflows, its eldest entry becomes a candidate for the main region and
+// is only admitted if the frequency sketch has seen it more often than the entry probation
+// would evict for it. All three regions are access-ordered LinkedHashMaps, so reordering
+// and eviction are O(1). Not thread-safe.
+public class TinyLfuCache<K, V> implements Cache<K, V> {
+    private final int maximumSize;
+    private final int maxWindow;
+    private final int maxProtected;
+    private final LinkedHashMap<K, V> window;
+    private final LinkedHashMap<K, V> probation;
+    private final LinkedHashMap<K, V> protectedRegion;
+    private final FrequencySketch sketch;
+
+    public TinyLfuCache(int maximumSize) {
+        if (maximumSize <= 0) {
+            throw new IllegalArgumentException("Invalid maximum size: " + maximumSize);
+        }
+        this.maximumSize = maximumSize;
+        this.maxWindow = Math.max(1, maximumSize / 100);
+        this.maxProtected = (int) ((maximumSize - maxWindow) * 0.8);
+        this.window = new LinkedHashMap<>(16, 0.75f, true);
+        this.probation = new LinkedHashMap<>(16, 0.75f, true);
+        this.protectedRegion = new LinkedHashMap<>(16, 0.75f, true);
+        this.sketch = new FrequencySketch(maximumSize);
+    }
+
+    @Override
+    public V getIfPresent(K key) {
+        sketch.increment(key);
+        V value = window.get(key);
+        if (value == null) {
+            value = protectedRegion.get(key);
+        }
+        if (value == null) {
+            value = probation.remove(key);
+            if (value != null) {
+                promote(key, value);
+            }
+        }
+        return value;
+    }
+
+    @Override
+    public void put(K key, V value) {
+        Objects.requireNonNull(key);
+        Objects.requireNonNull(value);
+        sketch.increment(key);
+        if (window.containsKey(key)) {
+            window.put(key, value);
+        } else if (protectedRegion.containsKey(key)) {
+            protectedRegion.put(key, value);
+        } else if (probation.remove(key) != null) {
+            promote(key, value);
+        } else {
+            window.put(key, value);
+            if (window.size() > maxWindow) {
+                Map.Entry<K, V> candidate = window.eldest();
+                window.remove(candidate.getKey());
+                admit(candidate.getKey(), candidate.getValue());
+            }
+        }
+    }
+
+    @Override
+    public void invalidate(K key) {
+        if (window.remove(key) == null && probation.remove(key) == null) {
+            protectedRegion.remove(key);
+        }
+    }
+
+    @Override
+    public int size() {
+        return window.size() + probation.size() + protectedRegion.size();
+    }
+
+    // A probation entry that was hit again moves to protected, which hands its own eldest
+    // back to probation once it is over its share
+    private void promote(K key, V value) {
+        protectedRegion.put(key, value);
+        if (protectedRegion.size() > maxProtected) {
+            Map.Entry<K, V> demoted = protectedRegion.eldest();
+            protectedRegion.remove(demoted.getKey());
+            probation.put(demoted.getKey(), demoted.getValue());
+        }
+    }
+
+    // Admits the window's evictee to probation, unless the main region is full and the
+    // entry it would displace has been more popular
+    private void admit(K key, V value) {
+        if (probation.size() + protectedRegion.size() < maximumSize - maxWindow) {
+            probation.put(key, value);
+            return;
+        }
+        Map.Entry<K, V> victim = probation.eldest();
+        if (victim == null) {
+            victim = protectedRegion.eldest();
+        }
+        if (victim == null) {
+            return; // No main region at all, the cache is just the window
+        }
+        if (sketch.frequency(key) > sketch.frequency(victim.getKey())) {
+            invalidate(victim.getKey());
+            probation.put(key, value);
+        }
+    }
+}